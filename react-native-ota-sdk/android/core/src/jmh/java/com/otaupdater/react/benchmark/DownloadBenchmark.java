@@ -0,0 +1,102 @@
+package com.otaupdater.react.benchmark;
+
+import com.otaupdater.react.BundleManager;
+import com.otaupdater.react.OTAConstants;
+import com.otaupdater.react.OTAUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full package downloads from a loopback server, so the numbers cover the client side of the
+ * engine: reading the body, hashing, extracting and publishing the package folder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DownloadBenchmark {
+
+    @Param({"10", "200"})
+    public int assetCount;
+
+    @Param({"false", "true"})
+    public boolean streamingExtract;
+
+    private File mRoot;
+    private HttpServer mServer;
+    private ExecutorService mServerExecutor;
+    private BundleManager mBundleManager;
+    private String mDownloadUrl;
+    private int mPackageCount = 0;
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException {
+        SyntheticPackages.installQuietPlatform();
+        mRoot = SyntheticPackages.createTempFolder("ota-download-bench");
+        File zipFile = new File(mRoot, "package.zip");
+        SyntheticPackages.createPackageZip(zipFile, assetCount);
+        final byte[] body = Files.readAllBytes(zipFile.toPath());
+
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        mServer.createContext("/package.zip", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().set("Content-Type", "application/zip");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream responseBody = exchange.getResponseBody();
+                responseBody.write(body);
+                responseBody.close();
+            }
+        });
+        mServerExecutor = Executors.newFixedThreadPool(2);
+        mServer.setExecutor(mServerExecutor);
+        mServer.start();
+        mDownloadUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/package.zip";
+
+        mBundleManager = new BundleManager(new File(mRoot, "files").getAbsolutePath());
+        mBundleManager.setStreamingExtractEnabled(streamingExtract);
+    }
+
+    @TearDown(Level.Invocation)
+    public void clearPackages() {
+        mBundleManager.clearUpdates();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() {
+        mServer.stop(0);
+        mServerExecutor.shutdown();
+        SyntheticPackages.deleteQuietly(mRoot);
+    }
+
+    @Benchmark
+    public void downloadPackage() throws IOException {
+        // A new hash per call, so no conditional request can skip the transfer
+        JSONObject updatePackage = new JSONObject();
+        OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.PACKAGE_HASH_KEY, "bench-" + mPackageCount++);
+        OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.DOWNLOAD_URL_KEY, mDownloadUrl);
+        mBundleManager.downloadPackage(updatePackage, OTAConstants.DEFAULT_JS_BUNDLE_NAME, null);
+    }
+}
@@ -0,0 +1,76 @@
+package com.otaupdater.react.benchmark;
+
+import com.otaupdater.react.FileUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FileBenchmark {
+
+    @Param({"10", "200"})
+    public int assetCount;
+
+    @Param({"1", "4"})
+    public int unzipThreads;
+
+    private File mRoot;
+    private File mZipFile;
+    private File mPackageFolder;
+    private File mDestination;
+
+    @Setup(Level.Trial)
+    public void createPackage() throws IOException {
+        SyntheticPackages.installQuietPlatform();
+        mRoot = SyntheticPackages.createTempFolder("ota-file-bench");
+        mZipFile = new File(mRoot, "package.zip");
+        SyntheticPackages.createPackageZip(mZipFile, assetCount);
+        mPackageFolder = new File(mRoot, "package");
+        FileUtils.unzipFile(mZipFile, mPackageFolder.getAbsolutePath());
+        mDestination = new File(mRoot, "destination");
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteDestination() {
+        SyntheticPackages.deleteQuietly(mDestination);
+    }
+
+    @TearDown(Level.Trial)
+    public void deletePackage() {
+        SyntheticPackages.deleteQuietly(mRoot);
+    }
+
+    @Benchmark
+    public void unzip() throws IOException {
+        FileUtils.unzipFile(mZipFile, mDestination.getAbsolutePath(), unzipThreads);
+    }
+
+    @Benchmark
+    public void copyDirectory() throws IOException {
+        FileUtils.copyDirectoryContents(mPackageFolder.getAbsolutePath(), mDestination.getAbsolutePath());
+    }
+
+    @Benchmark
+    public void linkDirectory() throws IOException {
+        FileUtils.linkDirectoryContents(mPackageFolder.getAbsolutePath(), mDestination.getAbsolutePath());
+    }
+
+    @Benchmark
+    public String hashArchive() throws IOException {
+        return FileUtils.computeFileSha256(mZipFile);
+    }
+}
@@ -0,0 +1,57 @@
+package com.otaupdater.react.benchmark;
+
+import com.otaupdater.react.OTAUtils;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MetadataBenchmark {
+
+    @Param({"10", "1000"})
+    public int manifestEntries;
+
+    private File mRoot;
+    private String mMetadataPath;
+    private JSONObject mMetadata;
+
+    @Setup(Level.Trial)
+    public void createMetadata() throws IOException {
+        SyntheticPackages.installQuietPlatform();
+        mRoot = SyntheticPackages.createTempFolder("ota-metadata-bench");
+        mMetadataPath = new File(mRoot, "app.json").getAbsolutePath();
+        mMetadata = SyntheticPackages.createPackageMetadata("bench", manifestEntries);
+        OTAUtils.writeJsonToFile(mMetadata, mMetadataPath);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteMetadata() {
+        SyntheticPackages.deleteQuietly(mRoot);
+    }
+
+    // Includes the temp file, rename and folder sync that make the write atomic
+    @Benchmark
+    public void write() throws IOException {
+        OTAUtils.writeJsonToFile(mMetadata, mMetadataPath);
+    }
+
+    @Benchmark
+    public JSONObject read() throws IOException {
+        return OTAUtils.getJsonObjectFromFile(mMetadataPath);
+    }
+}
@@ -0,0 +1,101 @@
+package com.otaupdater.react.benchmark;
+
+import com.otaupdater.react.FileUtils;
+import com.otaupdater.react.JvmPlatform;
+import com.otaupdater.react.OTAConstants;
+import com.otaupdater.react.OTAUtils;
+
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Deterministic update packages for the benchmarks: a compressible JS bundle plus incompressible
+ * asset files, roughly what a release with images looks like.
+ */
+final class SyntheticPackages {
+
+    static final int BUNDLE_BYTES = 1024 * 1024 * 2;
+    static final int ASSET_BYTES = 1024 * 16;
+
+    private static final String BUNDLE_LINE = "__d(function(g,r,i,a,m,e,d){\"use strict\";var t=r(d[0]);e.default=t;},";
+
+    private SyntheticPackages() {
+    }
+
+    // Keeps the core's log lines out of the measured code
+    static void installQuietPlatform() {
+        OTAUtils.setPlatform(new JvmPlatform() {
+            @Override
+            public void log(String message) {
+            }
+
+            @Override
+            public void log(Throwable tr) {
+            }
+        });
+    }
+
+    static File createTempFolder(String prefix) throws IOException {
+        return Files.createTempDirectory(prefix).toFile();
+    }
+
+    static void createPackageZip(File zipFile, int assetCount) throws IOException {
+        Random random = new Random(assetCount);
+        ZipOutputStream zipStream = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile)));
+        try {
+            zipStream.putNextEntry(new ZipEntry(OTAConstants.DEFAULT_JS_BUNDLE_NAME));
+            zipStream.write(createBundle(random));
+            zipStream.closeEntry();
+
+            byte[] asset = new byte[ASSET_BYTES];
+            for (int i = 0; i < assetCount; i++) {
+                random.nextBytes(asset);
+                zipStream.putNextEntry(new ZipEntry("assets/images/asset_" + i + ".png"));
+                zipStream.write(asset);
+                zipStream.closeEntry();
+            }
+        } finally {
+            zipStream.close();
+        }
+    }
+
+    static JSONObject createPackageMetadata(String packageHash, int manifestEntries) {
+        JSONObject manifest = new JSONObject();
+        Random random = new Random(manifestEntries);
+        byte[] hash = new byte[32];
+        for (int i = 0; i < manifestEntries; i++) {
+            random.nextBytes(hash);
+            OTAUtils.setJSONValueForKey(manifest, "assets/images/asset_" + i + ".png", OTAUtils.bytesToHex(hash));
+        }
+
+        JSONObject metadata = new JSONObject();
+        OTAUtils.setJSONValueForKey(metadata, OTAConstants.PACKAGE_HASH_KEY, packageHash);
+        OTAUtils.setJSONValueForKey(metadata, "label", "v" + manifestEntries);
+        OTAUtils.setJSONValueForKey(metadata, OTAConstants.MANIFEST_KEY, manifest);
+        return metadata;
+    }
+
+    static void deleteQuietly(File file) {
+        if (file.exists()) {
+            FileUtils.deleteFileOrFolderSilently(file);
+        }
+    }
+
+    private static byte[] createBundle(Random random) {
+        StringBuilder bundle = new StringBuilder(BUNDLE_BYTES + BUNDLE_LINE.length() + 16);
+        int module = 0;
+        while (bundle.length() < BUNDLE_BYTES) {
+            bundle.append(BUNDLE_LINE).append(module++).append(',').append(random.nextInt(1000)).append(");\n");
+        }
+        bundle.setLength(BUNDLE_BYTES);
+        return bundle.toString().getBytes();
+    }
+}
@@ -0,0 +1,100 @@
+package com.otaupdater.react;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Content-addressed store of package files. Every stored file is a hard link named by its
+ * SHA-256, and package folders link to the same inode, so the link count doubles as the
+ * reference count: a blob with a single link is no longer used by any package.
+ */
+public class AssetStore {
+
+    private String mStorePath;
+
+    public AssetStore(String storePath) {
+        mStorePath = storePath;
+    }
+
+    public synchronized void ingestDirectory(String folderPath) throws IOException {
+        File storeFolder = new File(mStorePath);
+        storeFolder.mkdirs();
+        ingestFiles(new File(folderPath), storeFolder, true);
+    }
+
+    public synchronized long getTotalBytes() {
+        File[] blobs = new File(mStorePath).listFiles();
+        if (blobs == null) {
+            return 0;
+        }
+
+        long totalBytes = 0;
+        for (File blob : blobs) {
+            totalBytes += blob.length();
+        }
+        return totalBytes;
+    }
+
+    public synchronized long collectGarbage() {
+        File[] blobs = new File(mStorePath).listFiles();
+        if (blobs == null) {
+            return 0;
+        }
+
+        long freedBytes = 0;
+        for (File blob : blobs) {
+            try {
+                if (OTAUtils.getPlatform().getLinkCount(blob) <= 1) {
+                    long size = blob.length();
+                    if (blob.delete()) {
+                        freedBytes += size;
+                    }
+                }
+            } catch (IOException e) {
+                OTAUtils.log("Unable to stat stored file " + blob.getName() + ": " + e.getMessage());
+            }
+        }
+
+        return freedBytes;
+    }
+
+    private void ingestFiles(File folder, File storeFolder, boolean isPackageRoot) throws IOException {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (file.isDirectory()) {
+                ingestFiles(file, storeFolder, false);
+            } else if (!(isPackageRoot && file.getName().equals(OTAConstants.PACKAGE_FILE_NAME))) {
+                ingestFile(file, storeFolder);
+            }
+        }
+    }
+
+    private void ingestFile(File file, File storeFolder) throws IOException {
+        File blob = new File(storeFolder, FileUtils.computeFileSha256(file));
+        try {
+            if (!blob.exists()) {
+                OTAUtils.getPlatform().link(file, blob);
+                return;
+            }
+
+            if (OTAUtils.getPlatform().isSameFile(file, blob)) {
+                return;
+            }
+
+            // Swap the file for a link to the stored copy without ever leaving the path empty
+            File link = new File(file.getAbsolutePath() + ".link");
+            link.delete();
+            OTAUtils.getPlatform().link(blob, link);
+            if (!link.renameTo(file)) {
+                link.delete();
+            }
+        } catch (IOException e) {
+            // Hard links are unavailable here, the package keeps its own copy
+            OTAUtils.log("Unable to store " + file.getName() + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.otaupdater.react;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Token bucket shared by every download stream. Readers take tokens for the bytes they just read
+ * and wait while the bucket is in debt. The rate can change at any time, including to unlimited,
+ * and waiting readers pick the new rate up immediately.
+ */
+public class BandwidthLimiter {
+
+    private static final long MAX_BURST_MS = 250;
+    private static final long MIN_BURST_BYTES = 1024 * 16;
+
+    private long mBytesPerSecond = 0;
+    private double mTokens = 0;
+    // Set by the refill in setBytesPerSecond before any limit applies
+    private long mLastRefillNanos;
+
+    // 0 or less removes the limit
+    public synchronized void setBytesPerSecond(long bytesPerSecond) {
+        refill();
+        mBytesPerSecond = Math.max(0, bytesPerSecond);
+        mTokens = Math.min(mTokens, getBurstBytes());
+        notifyAll();
+    }
+
+    public synchronized long getBytesPerSecond() {
+        return mBytesPerSecond;
+    }
+
+    public synchronized void acquire(long numBytes) throws InterruptedIOException {
+        if (mBytesPerSecond == 0) {
+            return;
+        }
+
+        refill();
+        mTokens -= numBytes;
+        while (mBytesPerSecond > 0 && mTokens < 0) {
+            long waitMs = Math.max(1, (long) Math.ceil(-mTokens * 1000 / mBytesPerSecond));
+            try {
+                waitFor(waitMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for download bandwidth");
+            }
+            refill();
+        }
+    }
+
+    private void refill() {
+        long now = nanoTime();
+        if (mBytesPerSecond > 0) {
+            mTokens = Math.min(getBurstBytes(), mTokens + (now - mLastRefillNanos) / 1e9 * mBytesPerSecond);
+        } else {
+            mTokens = 0;
+        }
+        mLastRefillNanos = now;
+    }
+
+    private double getBurstBytes() {
+        return Math.max(MIN_BURST_BYTES, mBytesPerSecond * MAX_BURST_MS / 1000);
+    }
+
+    // Time source and wait, overridden by tests to run the bucket on a fake clock
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    void waitFor(long waitMs) throws InterruptedException {
+        wait(waitMs);
+    }
+}
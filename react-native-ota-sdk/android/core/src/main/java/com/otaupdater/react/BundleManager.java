@@ -0,0 +1,1377 @@
+package com.otaupdater.react;
+
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+
+public class BundleManager {
+
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
+    private String mDocumentsDirectory;
+    private String mBundleFileName;
+    private boolean mStreamingExtractEnabled = false;
+    private boolean mContentAddressedStoreEnabled = false;
+    private boolean mSegmentedDownloadEnabled = false;
+    private AssetStore mAssetStore;
+    private PackageIndex mPackageIndex;
+    private int mMaxPackages = 0;
+    private long mMaxStorageBytes = 0;
+    private final AtomicBoolean mIsCollectionScheduled = new AtomicBoolean();
+
+    // Packages being downloaded by any instance, a reload can leave the old module's download running
+    private static final Set<String> sActiveDownloads = new HashSet<>();
+    // The last finished download that hasn't been installed yet, guarded by sActiveDownloads
+    private static String sDownloadedPackageHash;
+    private HttpTransport mHttpTransport = new UrlConnectionTransport();
+    private final BandwidthLimiter mBandwidthLimiter = new BandwidthLimiter();
+
+    // Parsed ota.json and app.json contents, guarded by sMetadataLock. Cached trees are replaced and
+    // never modified, so the engine reads them in place; only the public accessors hand out copies.
+    // The lock is shared by every instance since an old module's download can outlive a reload, but
+    // each instance keeps its own cache, so garbage collection rereads the status from disk.
+    private static final Object sMetadataLock = new Object();
+    private JSONObject mCachedPackageInfo;
+    private final Map<String, JSONObject> mCachedPackages = new HashMap<>();
+
+    public BundleManager(String documentsDirectory) {
+        this(documentsDirectory, OTAConstants.DEFAULT_JS_BUNDLE_NAME);
+    }
+
+    public BundleManager(String documentsDirectory, String bundleFileName) {
+        mDocumentsDirectory = documentsDirectory;
+        mBundleFileName = bundleFileName;
+        mAssetStore = new AssetStore(OTAUtils.appendPathComponent(getOTAPath(), OTAConstants.ASSET_STORE_FOLDER_NAME));
+        mPackageIndex = PackageIndex.getInstance(getOTAPath());
+    }
+
+    public void setStreamingExtractEnabled(boolean streamingExtractEnabled) {
+        mStreamingExtractEnabled = streamingExtractEnabled;
+    }
+
+    public boolean isStreamingExtractEnabled() {
+        return mStreamingExtractEnabled;
+    }
+
+    public void setContentAddressedStoreEnabled(boolean contentAddressedStoreEnabled) {
+        mContentAddressedStoreEnabled = contentAddressedStoreEnabled;
+        mPackageIndex.setAssetStoreEnabled(contentAddressedStoreEnabled);
+    }
+
+    public boolean isContentAddressedStoreEnabled() {
+        return mContentAddressedStoreEnabled;
+    }
+
+    public void setHttpTransport(HttpTransport httpTransport) {
+        mHttpTransport = httpTransport;
+    }
+
+    // Applies to downloads already running as well, 0 removes the limit
+    public void setMaxDownloadRate(long bytesPerSecond) {
+        mBandwidthLimiter.setBytesPerSecond(bytesPerSecond);
+    }
+
+    public long getMaxDownloadRate() {
+        return mBandwidthLimiter.getBytesPerSecond();
+    }
+
+    // Keep at most this many package folders, 0 for no limit. The current and previous packages are always kept.
+    public void setMaxPackages(int maxPackages) {
+        mMaxPackages = Math.max(0, maxPackages);
+    }
+
+    public int getMaxPackages() {
+        return mMaxPackages;
+    }
+
+    // Keep package folders under this many bytes in total, 0 for no limit. With the content-addressed
+    // store, the store counts once and packages only count the files they don't share through it.
+    public void setMaxStorageBytes(long maxStorageBytes) {
+        mMaxStorageBytes = Math.max(0, maxStorageBytes);
+    }
+
+    public long getMaxStorageBytes() {
+        return mMaxStorageBytes;
+    }
+
+    public void setSegmentedDownloadEnabled(boolean segmentedDownloadEnabled) {
+        mSegmentedDownloadEnabled = segmentedDownloadEnabled;
+    }
+
+    public boolean isSegmentedDownloadEnabled() {
+        return mSegmentedDownloadEnabled;
+    }
+
+    private String getDownloadFilePath() {
+        return OTAUtils.appendPathComponent(getOTAPath(), OTAConstants.DOWNLOAD_FILE_NAME);
+    }
+
+    private String getDownloadResumeInfoPath() {
+        return OTAUtils.appendPathComponent(getOTAPath(), OTAConstants.DOWNLOAD_RESUME_FILE_NAME);
+    }
+
+    private String getHttpCacheFilePath() {
+        return OTAUtils.appendPathComponent(getOTAPath(), OTAConstants.HTTP_CACHE_FILE_NAME);
+    }
+
+    private String getPackageStagingFolderPath(String packageHash) {
+        return OTAUtils.appendPathComponent(getOTAPath(), packageHash + OTAConstants.STAGING_FOLDER_SUFFIX);
+    }
+
+    private String getDocumentsDirectory() {
+        return mDocumentsDirectory;
+    }
+
+    private String getOTAPath() {
+        return OTAUtils.appendPathComponent(getDocumentsDirectory(), OTAConstants.CODE_PUSH_FOLDER_PREFIX);
+    }
+
+    private String getStatusFilePath() {
+        return OTAUtils.appendPathComponent(getOTAPath(), OTAConstants.STATUS_FILE);
+    }
+
+    public JSONObject getCurrentPackageInfo() {
+        synchronized (sMetadataLock) {
+            return OTAUtils.copyJsonObject(getCachedPackageInfo());
+        }
+    }
+
+    // Callers hold sMetadataLock and must not modify the result
+    private JSONObject getCachedPackageInfo() {
+        if (mCachedPackageInfo == null) {
+            mCachedPackageInfo = readCurrentPackageInfo();
+        }
+
+        return mCachedPackageInfo;
+    }
+
+    // Callers hold sMetadataLock and must not modify the result. Null when the package isn't installed.
+    private JSONObject getCachedPackage(String packageHash) {
+        JSONObject cachedPackage = mCachedPackages.get(packageHash);
+        if (cachedPackage == null) {
+            try {
+                cachedPackage = OTAUtils.getJsonObjectFromFile(OTAUtils.appendPathComponent(
+                        getPackageFolderPath(packageHash), OTAConstants.PACKAGE_FILE_NAME));
+            } catch (IOException e) {
+                return null;
+            }
+            mCachedPackages.put(packageHash, cachedPackage);
+        }
+
+        return cachedPackage;
+    }
+
+    private boolean hasPackage(String packageHash) {
+        synchronized (sMetadataLock) {
+            return getCachedPackage(packageHash) != null;
+        }
+    }
+
+    private String readPackageField(String packageHash, String key) {
+        synchronized (sMetadataLock) {
+            JSONObject cachedPackage = getCachedPackage(packageHash);
+            return cachedPackage != null ? cachedPackage.optString(key, null) : null;
+        }
+    }
+
+    // The cached manifest itself: read only, and safe to read after the lock is released since
+    // cached trees are never modified
+    private JSONObject readPackageManifest(String packageHash) {
+        synchronized (sMetadataLock) {
+            JSONObject cachedPackage = getCachedPackage(packageHash);
+            return cachedPackage != null ? cachedPackage.optJSONObject(OTAConstants.MANIFEST_KEY) : null;
+        }
+    }
+
+    private String readStatusField(String key) {
+        synchronized (sMetadataLock) {
+            return getCachedPackageInfo().optString(key, null);
+        }
+    }
+
+    private JSONObject readCurrentPackageInfo() {
+        String statusFilePath = getStatusFilePath();
+        if (!FileUtils.fileAtPathExists(statusFilePath)) {
+            return new JSONObject();
+        }
+
+        try {
+            return OTAUtils.getJsonObjectFromFile(statusFilePath);
+        } catch (IOException e) {
+            throw new OTAUnknownException("Error getting current package info", e);
+        }
+    }
+
+    public void updateCurrentPackageInfo(JSONObject packageInfo) {
+        synchronized (sMetadataLock) {
+            try {
+                OTAUtils.writeJsonToFile(packageInfo, getStatusFilePath());
+                mCachedPackageInfo = OTAUtils.copyJsonObject(packageInfo);
+            } catch (IOException e) {
+                mCachedPackageInfo = null;
+                throw new OTAUnknownException("Error updating current package info", e);
+            }
+        }
+    }
+
+    private void invalidateCachedPackage(String packageHash) {
+        synchronized (sMetadataLock) {
+            mCachedPackages.remove(packageHash);
+        }
+    }
+
+    public String getCurrentPackageFolderPath() {
+        String packageHash = getCurrentPackageHash();
+        if (packageHash == null) {
+            return null;
+        }
+
+        return getPackageFolderPath(packageHash);
+    }
+
+    public String getCurrentPackageBundlePath(String bundleFileName) {
+        String packageHash;
+        String relativeBundlePath;
+        synchronized (sMetadataLock) {
+            packageHash = getCachedPackageInfo().optString(OTAConstants.CURRENT_PACKAGE_KEY, null);
+            JSONObject currentPackage = packageHash != null ? getCachedPackage(packageHash) : null;
+            if (currentPackage == null) {
+                return null;
+            }
+            relativeBundlePath = currentPackage.optString(OTAConstants.RELATIVE_BUNDLE_PATH_KEY, null);
+        }
+
+        String packageFolder = getPackageFolderPath(packageHash);
+        if (relativeBundlePath == null) {
+            return OTAUtils.appendPathComponent(packageFolder, bundleFileName);
+        } else {
+            return OTAUtils.appendPathComponent(packageFolder, relativeBundlePath);
+        }
+    }
+
+    public String getPackageFolderPath(String packageHash) {
+        return OTAUtils.appendPathComponent(getOTAPath(), packageHash);
+    }
+
+    public String getCurrentPackageHash() {
+        return readStatusField(OTAConstants.CURRENT_PACKAGE_KEY);
+    }
+
+    public String getPreviousPackageHash() {
+        return readStatusField(OTAConstants.PREVIOUS_PACKAGE_KEY);
+    }
+
+    public JSONObject getCurrentPackage() {
+        String packageHash = getCurrentPackageHash();
+        if (packageHash == null) {
+            return null;
+        }
+
+        return getPackage(packageHash);
+    }
+
+    public JSONObject getPreviousPackage() {
+        String packageHash = getPreviousPackageHash();
+        if (packageHash == null) {
+            return null;
+        }
+
+        return getPackage(packageHash);
+    }
+
+    public JSONObject getPackage(String packageHash) {
+        synchronized (sMetadataLock) {
+            JSONObject cachedPackage = getCachedPackage(packageHash);
+            return cachedPackage != null ? OTAUtils.copyJsonObject(cachedPackage) : null;
+        }
+    }
+
+    // Passes app.json to the reader without parsing it into a JSONObject. Returns null when the
+    // package isn't installed.
+    public <T> T readPackageMetadata(String packageHash, PackageMetadataReader<T> reader) throws IOException {
+        synchronized (sMetadataLock) {
+            return readPackageMetadataLocked(packageHash, reader);
+        }
+    }
+
+    public <T> T readCurrentPackageMetadata(PackageMetadataReader<T> reader) throws IOException {
+        synchronized (sMetadataLock) {
+            String packageHash = getCachedPackageInfo().optString(OTAConstants.CURRENT_PACKAGE_KEY, null);
+            return packageHash != null ? readPackageMetadataLocked(packageHash, reader) : null;
+        }
+    }
+
+    private <T> T readPackageMetadataLocked(String packageHash, PackageMetadataReader<T> reader) throws IOException {
+        File metadataFile = new File(getPackageFolderPath(packageHash), OTAConstants.PACKAGE_FILE_NAME);
+        if (!metadataFile.isFile()) {
+            return null;
+        }
+
+        InputStream metadataStream = new BufferedInputStream(new FileInputStream(metadataFile));
+        try {
+            return reader.read(metadataStream);
+        } finally {
+            metadataStream.close();
+        }
+    }
+
+    public void downloadPackage(JSONObject updatePackage, String expectedBundleFileName,
+                                DownloadProgressCallback progressCallback) throws IOException {
+        String newUpdateHash = updatePackage.optString(OTAConstants.PACKAGE_HASH_KEY, null);
+        if (newUpdateHash == null) {
+            // Generate hash from version if not provided
+            String versionName = updatePackage.optString(OTAConstants.VERSION_NAME_KEY, "unknown");
+            newUpdateHash = String.valueOf(versionName.hashCode());
+            OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.PACKAGE_HASH_KEY, newUpdateHash);
+        }
+
+        synchronized (sActiveDownloads) {
+            sActiveDownloads.add(newUpdateHash);
+        }
+        UpdateMetrics metrics = new UpdateMetrics(UpdateMetrics.TYPE_DOWNLOAD, newUpdateHash);
+        try {
+            downloadPackageContents(updatePackage, newUpdateHash, expectedBundleFileName, progressCallback, metrics);
+            if (!hasPackage(newUpdateHash)) {
+                throw new OTAUnknownException("Package " + newUpdateHash + " is missing after its download");
+            }
+            mPackageIndex.recordPackage(newUpdateHash, System.currentTimeMillis());
+            synchronized (sActiveDownloads) {
+                // Keeps the package out of garbage collection until it is installed or superseded
+                sDownloadedPackageHash = newUpdateHash;
+            }
+            metrics.finish();
+        } catch (IOException | RuntimeException e) {
+            metrics.fail(e.getMessage());
+            throw e;
+        } finally {
+            synchronized (sActiveDownloads) {
+                sActiveDownloads.remove(newUpdateHash);
+            }
+        }
+
+        scheduleGarbageCollection();
+    }
+
+    private void downloadPackageContents(JSONObject updatePackage, String newUpdateHash, String expectedBundleFileName,
+                                         DownloadProgressCallback progressCallback, UpdateMetrics metrics) throws IOException {
+        // Contents are assembled in a staging folder and published with a single rename
+        String stagingFolderPath = getPackageStagingFolderPath(newUpdateHash);
+        if (FileUtils.fileAtPathExists(stagingFolderPath)) {
+            FileUtils.deleteDirectoryAtPath(stagingFolderPath);
+        }
+
+        String downloadUrlString = updatePackage.optString(OTAConstants.DOWNLOAD_URL_KEY, null);
+        if (downloadUrlString == null) {
+            throw new OTAInvalidUpdateException("Download URL is missing from update package");
+        }
+
+        // An installed copy of this package with saved validators only needs a conditional request
+        JSONObject cachedValidators = getCachedValidators(downloadUrlString, newUpdateHash);
+        if (cachedValidators == null &&
+            (tryDownloadPatch(updatePackage, expectedBundleFileName, progressCallback, metrics) ||
+             tryDownloadDiff(updatePackage, expectedBundleFileName, progressCallback, metrics))) {
+            return;
+        }
+
+        File downloadFolder = new File(getOTAPath());
+        downloadFolder.mkdirs();
+        File downloadFile = new File(downloadFolder, OTAConstants.DOWNLOAD_FILE_NAME);
+
+        // Resume a partial download only when it belongs to the same URL and we kept a validator for it
+        JSONObject resumeInfo = getDownloadResumeInfo(downloadUrlString);
+        long resumeOffset = resumeInfo != null && downloadFile.exists() ? downloadFile.length() : 0;
+        if (resumeOffset == 0) {
+            discardPartialDownload(downloadFile);
+        }
+
+        String expectedSha256 = updatePackage.optString(OTAConstants.DOWNLOAD_SHA256_KEY, null);
+        MessageDigest digest = expectedSha256 != null ? OTAUtils.createSha256Digest() : null;
+
+        SegmentedDownload segmentedDownload = resumeOffset == 0 && cachedValidators == null && mSegmentedDownloadEnabled ?
+                tryDownloadSegmented(downloadUrlString, downloadFile, expectedSha256, progressCallback, metrics) : null;
+        if (segmentedDownload != null) {
+            byte[] header = new byte[4];
+            readFileHeader(downloadFile, header);
+            installDownloadedFile(updatePackage, expectedBundleFileName, downloadFile,
+                    ByteBuffer.wrap(header).getInt() == 0x504b0304, false, metrics);
+            saveCachedValidators(downloadUrlString, newUpdateHash, segmentedDownload.getETag(),
+                    segmentedDownload.getLastModified());
+            return;
+        }
+
+        HttpResponse response = null;
+        BufferedInputStream bin = null;
+        FileOutputStream fos = null;
+        BufferedOutputStream bout = null;
+        boolean isZip = false;
+        boolean isStreamed = false;
+        String etag = null;
+        String lastModified = null;
+
+        try {
+            URL downloadUrl = new URL(downloadUrlString);
+            Map<String, String> requestHeaders = createDownloadHeaders(resumeOffset, resumeInfo);
+            if (resumeOffset == 0 && cachedValidators != null) {
+                String cachedETag = cachedValidators.optString(OTAConstants.DOWNLOAD_ETAG_KEY, null);
+                String cachedLastModified = cachedValidators.optString(OTAConstants.DOWNLOAD_LAST_MODIFIED_KEY, null);
+                if (cachedETag != null) {
+                    requestHeaders.put("If-None-Match", cachedETag);
+                }
+                if (cachedLastModified != null) {
+                    requestHeaders.put("If-Modified-Since", cachedLastModified);
+                }
+            }
+
+            long requestTime = UpdateMetrics.now();
+            response = mHttpTransport.execute(downloadUrl, requestHeaders);
+            metrics.addPhase("connect", requestTime);
+            int responseCode = response.getStatusCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cachedValidators != null) {
+                OTAUtils.log("Package " + newUpdateHash + " is unchanged at " + downloadUrlString + ", keeping the installed copy");
+                metrics.put("path", "notModified");
+                // A 304 may carry updated validators, the ones it omits still hold
+                etag = response.getHeader("ETag");
+                lastModified = response.getHeader("Last-Modified");
+                saveCachedValidators(downloadUrlString, newUpdateHash,
+                        etag != null ? etag : cachedValidators.optString(OTAConstants.DOWNLOAD_ETAG_KEY, null),
+                        lastModified != null ? lastModified : cachedValidators.optString(OTAConstants.DOWNLOAD_LAST_MODIFIED_KEY, null));
+                return;
+            }
+            if (resumeOffset > 0 && (responseCode == HTTP_RANGE_NOT_SATISFIABLE ||
+                    responseCode == HttpURLConnection.HTTP_PARTIAL && getContentRangeStart(response) != resumeOffset)) {
+                // The partial file no longer matches the remote artifact, or the server sent some other
+                // range; either way the body can't be appended, so start over without a range
+                response.close();
+                discardPartialDownload(downloadFile);
+                resumeOffset = 0;
+                metrics.increment("retries");
+                requestTime = UpdateMetrics.now();
+                response = mHttpTransport.execute(downloadUrl, createDownloadHeaders(0, null));
+                metrics.addPhase("connect", requestTime);
+                responseCode = response.getStatusCode();
+            }
+
+            boolean isResumed = resumeOffset > 0 && responseCode == HttpURLConnection.HTTP_PARTIAL;
+            if (!isResumed) {
+                // Only a 200 carries the full artifact; errors are reported when the body is read
+                if (responseCode != HttpURLConnection.HTTP_OK && responseCode < HttpURLConnection.HTTP_BAD_REQUEST) {
+                    throw new OTAUnknownException("Unexpected HTTP " + responseCode + " for " + downloadUrlString);
+                }
+                // Server ignored the range or the validator changed, the body is the full artifact
+                resumeOffset = 0;
+            }
+
+            etag = response.getHeader("ETag");
+            lastModified = response.getHeader("Last-Modified");
+
+            long contentLength = response.getContentLength();
+            long totalBytes = contentLength >= 0 ? resumeOffset + contentLength : -1;
+            long receivedBytes = resumeOffset;
+
+            ProgressInputStream progressStream = new ProgressInputStream(response.getBody(),
+                    totalBytes, receivedBytes, progressCallback, mBandwidthLimiter);
+            boolean isEncoded = isContentEncoded(response);
+            InputStream bodyStream = decodeContent(response, progressStream);
+            if (digest != null) {
+                // Hash in the read loop so verification needs no second pass over the file
+                if (isResumed) {
+                    FileUtils.updateDigestFromFile(digest, downloadFile);
+                }
+                bodyStream = new DigestInputStream(bodyStream, digest);
+            }
+            bin = new BufferedInputStream(bodyStream, OTAConstants.DOWNLOAD_BUFFER_SIZE);
+
+            byte[] header = new byte[4];
+            if (mStreamingExtractEnabled && !isResumed && peekHeader(bin, header) &&
+                ByteBuffer.wrap(header).getInt() == 0x504b0304) {
+                // Inflate while downloading, the archive itself never touches the disk
+                isZip = true;
+                isStreamed = true;
+                discardPartialDownload(downloadFile);
+                FileUtils.unzipStream(bin, stagingFolderPath);
+            } else {
+                if (isEncoded) {
+                    // Ranges address the encoded body, so a decoded partial file can't be resumed
+                    deleteDownloadResumeInfo();
+                } else {
+                    saveDownloadResumeInfo(downloadUrlString, response);
+                }
+
+                fos = new FileOutputStream(downloadFile, isResumed);
+                bout = new BufferedOutputStream(fos, OTAConstants.DOWNLOAD_BUFFER_SIZE);
+                byte[] data = new byte[OTAConstants.DOWNLOAD_BUFFER_SIZE];
+                if (isResumed) {
+                    readFileHeader(downloadFile, header);
+                }
+
+                int numBytesRead = 0;
+                while ((numBytesRead = bin.read(data, 0, OTAConstants.DOWNLOAD_BUFFER_SIZE)) >= 0) {
+                    if (receivedBytes < 4) {
+                        for (int i = 0; i < numBytesRead; i++) {
+                            int headerOffset = (int) (receivedBytes) + i;
+                            if (headerOffset >= 4) {
+                                break;
+                            }
+                            header[headerOffset] = data[i];
+                        }
+                    }
+
+                    receivedBytes += numBytesRead;
+                    bout.write(data, 0, numBytesRead);
+                }
+
+                isZip = ByteBuffer.wrap(header).getInt() == 0x504b0304;
+            }
+
+            if (isEncoded) {
+                if (!isStreamed) {
+                    // A decoder may stop before the end of the encoded body, consume the rest so it is fully counted
+                    byte[] remainder = new byte[1024 * 8];
+                    while (progressStream.read(remainder) != -1) {
+                        // Skip trailing encoded bytes
+                    }
+                }
+                OTAUtils.log("Received " + progressStream.getReceivedBytes() + " " + response.getHeader("Content-Encoding") +
+                        " encoded bytes, " + progressStream.getDecodedBytes() + " bytes decoded");
+            }
+
+            long wireBytes = progressStream.getReceivedBytes();
+            OTAUtils.log("Downloaded " + (wireBytes - resumeOffset) + " bytes at " + progressStream.getBytesPerSecond() + " bytes/s");
+            long firstByteTime = progressStream.getFirstByteTime() >= 0 ? progressStream.getFirstByteTime() : UpdateMetrics.now();
+            metrics.addPhaseDuration("firstByte", firstByteTime - requestTime);
+            // With streaming extraction, transfer includes inflating the archive
+            metrics.addPhase("transfer", firstByteTime);
+            metrics.put("path", isStreamed ? "streamed" : "full");
+            metrics.put("bytes", wireBytes - resumeOffset);
+            metrics.put("resumedBytes", resumeOffset);
+            metrics.put("decodedBytes", progressStream.getDecodedBytes() - resumeOffset);
+            metrics.put("bytesPerSecond", progressStream.getBytesPerSecond());
+            if (totalBytes > 0 && totalBytes != wireBytes) {
+                throw new OTAUnknownException("Received " + wireBytes + " bytes, expected " + totalBytes);
+            }
+
+            if (digest != null) {
+                String actualSha256 = OTAUtils.bytesToHex(digest.digest());
+                if (!expectedSha256.equalsIgnoreCase(actualSha256)) {
+                    if (!isStreamed) {
+                        discardPartialDownload(downloadFile);
+                    }
+                    throw new OTAInvalidUpdateException("Downloaded package hash " + actualSha256 +
+                            " does not match expected hash " + expectedSha256 + ".");
+                }
+            }
+        } catch (MalformedURLException e) {
+            throw new OTAMalformedDataException(downloadUrlString, e);
+        } catch (IOException | RuntimeException e) {
+            if (isStreamed) {
+                FileUtils.deleteDirectoryAtPath(stagingFolderPath);
+            }
+            throw e;
+        } finally {
+            try {
+                if (bout != null) bout.close();
+                if (fos != null) fos.close();
+                if (bin != null) bin.close();
+                if (response != null) response.close();
+            } catch (IOException e) {
+                throw new OTAUnknownException("Error closing IO resources.", e);
+            }
+        }
+
+        installDownloadedFile(updatePackage, expectedBundleFileName, downloadFile, isZip, isStreamed, metrics);
+        saveCachedValidators(downloadUrlString, newUpdateHash, etag, lastModified);
+    }
+
+    private void installDownloadedFile(JSONObject updatePackage, String expectedBundleFileName, File downloadFile,
+                                       boolean isZip, boolean isStreamed, UpdateMetrics metrics) throws IOException {
+        String packageHash = updatePackage.optString(OTAConstants.PACKAGE_HASH_KEY, null);
+        String newUpdateFolderPath = getPackageFolderPath(packageHash);
+        String stagingFolderPath = getPackageStagingFolderPath(packageHash);
+        String newUpdateMetadataPath = OTAUtils.appendPathComponent(stagingFolderPath, OTAConstants.PACKAGE_FILE_NAME);
+
+        deleteDownloadResumeInfo();
+
+        try {
+            long phaseStart = UpdateMetrics.now();
+            if (isZip) {
+                if (!isStreamed) {
+                    FileUtils.unzipFile(downloadFile, stagingFolderPath);
+                    FileUtils.deleteFileOrFolderSilently(downloadFile);
+                    metrics.addPhase("unzip", phaseStart);
+                }
+
+                // Find bundle file in the extracted contents
+                phaseStart = UpdateMetrics.now();
+                String relativeBundlePath = findJSBundleInUpdateContents(stagingFolderPath, expectedBundleFileName);
+                metrics.addPhase("bundleSearch", phaseStart);
+
+                if (relativeBundlePath == null) {
+                    throw new OTAInvalidUpdateException("Update is invalid - A JS bundle file named \"" + expectedBundleFileName + "\" could not be found within the downloaded contents.");
+                } else {
+                    OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.RELATIVE_BUNDLE_PATH_KEY, relativeBundlePath);
+                }
+            } else {
+                FileUtils.moveFile(downloadFile, stagingFolderPath, expectedBundleFileName);
+                metrics.addPhase("move", phaseStart);
+            }
+
+            writePackageMetadata(updatePackage, newUpdateMetadataPath, metrics);
+            publishStagingFolder(stagingFolderPath, newUpdateFolderPath, metrics);
+        } catch (IOException | RuntimeException e) {
+            FileUtils.deleteDirectoryAtPath(stagingFolderPath);
+            throw e;
+        }
+    }
+
+    private JSONObject readHttpCache() {
+        String httpCachePath = getHttpCacheFilePath();
+        if (!FileUtils.fileAtPathExists(httpCachePath)) {
+            return new JSONObject();
+        }
+
+        try {
+            return OTAUtils.getJsonObjectFromFile(httpCachePath);
+        } catch (Exception e) {
+            OTAUtils.log("Ignoring unreadable HTTP cache: " + e.getMessage());
+            return new JSONObject();
+        }
+    }
+
+    private JSONObject getCachedValidators(String downloadUrlString, String packageHash) {
+        synchronized (sMetadataLock) {
+            if (getCachedPackage(packageHash) == null) {
+                return null;
+            }
+
+            JSONObject entry = readHttpCache().optJSONObject(downloadUrlString);
+            if (entry == null || !packageHash.equals(entry.optString(OTAConstants.PACKAGE_HASH_KEY, null))) {
+                return null;
+            }
+
+            return entry;
+        }
+    }
+
+    private void saveCachedValidators(String downloadUrlString, String packageHash, String etag, String lastModified) {
+        synchronized (sMetadataLock) {
+            JSONObject httpCache = readHttpCache();
+
+            // Entries for packages that have since been removed can never be used again
+            Iterator<String> urls = httpCache.keys();
+            List<String> staleUrls = new ArrayList<>();
+            while (urls.hasNext()) {
+                String url = urls.next();
+                JSONObject entry = httpCache.optJSONObject(url);
+                if (entry == null || !entry.has(OTAConstants.RESPONSE_BODY_KEY) &&
+                        getCachedPackage(entry.optString(OTAConstants.PACKAGE_HASH_KEY, "")) == null) {
+                    staleUrls.add(url);
+                }
+            }
+            for (String url : staleUrls) {
+                httpCache.remove(url);
+            }
+
+            if (etag != null || lastModified != null) {
+                JSONObject entry = new JSONObject();
+                OTAUtils.setJSONValueForKey(entry, OTAConstants.PACKAGE_HASH_KEY, packageHash);
+                OTAUtils.setJSONValueForKey(entry, OTAConstants.DOWNLOAD_ETAG_KEY, etag);
+                OTAUtils.setJSONValueForKey(entry, OTAConstants.DOWNLOAD_LAST_MODIFIED_KEY, lastModified);
+                OTAUtils.setJSONValueForKey(httpCache, downloadUrlString, entry);
+            } else {
+                httpCache.remove(downloadUrlString);
+            }
+
+            try {
+                OTAUtils.writeJsonToFile(httpCache, getHttpCacheFilePath());
+            } catch (IOException e) {
+                // Only costs a full download next time
+                OTAUtils.log("Unable to save HTTP cache: " + e.getMessage());
+            }
+        }
+    }
+
+    // The last response to a conditional request made outside the engine, such as the update
+    // check. Returns null when nothing is cached for the URL.
+    public JSONObject getCachedResponse(String urlString) {
+        synchronized (sMetadataLock) {
+            JSONObject entry = readHttpCache().optJSONObject(urlString);
+            return entry != null && entry.has(OTAConstants.RESPONSE_BODY_KEY) ? entry : null;
+        }
+    }
+
+    public void saveCachedResponse(String urlString, String etag, String lastModified, String body) {
+        synchronized (sMetadataLock) {
+            JSONObject httpCache = readHttpCache();
+
+            // Only the latest response is kept, a new app version changes the check URL anyway
+            Iterator<String> urls = httpCache.keys();
+            List<String> replacedUrls = new ArrayList<>();
+            while (urls.hasNext()) {
+                String url = urls.next();
+                JSONObject entry = httpCache.optJSONObject(url);
+                if (entry != null && entry.has(OTAConstants.RESPONSE_BODY_KEY)) {
+                    replacedUrls.add(url);
+                }
+            }
+            for (String url : replacedUrls) {
+                httpCache.remove(url);
+            }
+
+            if (body != null && (etag != null || lastModified != null)) {
+                JSONObject entry = new JSONObject();
+                OTAUtils.setJSONValueForKey(entry, OTAConstants.DOWNLOAD_ETAG_KEY, etag);
+                OTAUtils.setJSONValueForKey(entry, OTAConstants.DOWNLOAD_LAST_MODIFIED_KEY, lastModified);
+                OTAUtils.setJSONValueForKey(entry, OTAConstants.RESPONSE_BODY_KEY, body);
+                OTAUtils.setJSONValueForKey(httpCache, urlString, entry);
+            }
+
+            try {
+                // The update check can run before the first download created the folder
+                new File(getOTAPath()).mkdirs();
+                OTAUtils.writeJsonToFile(httpCache, getHttpCacheFilePath());
+            } catch (IOException e) {
+                OTAUtils.log("Unable to save HTTP cache: " + e.getMessage());
+            }
+        }
+    }
+
+    // Returns null when the server can't serve segments and the caller should use a single request
+    private SegmentedDownload tryDownloadSegmented(String downloadUrlString, File downloadFile, String expectedSha256,
+                                                   DownloadProgressCallback progressCallback, UpdateMetrics metrics) throws IOException {
+        SegmentedDownload segmentedDownload;
+        long phaseStart = UpdateMetrics.now();
+        try {
+            segmentedDownload = SegmentedDownload.probe(mHttpTransport, new URL(downloadUrlString));
+        } catch (IOException e) {
+            OTAUtils.log("Unable to probe " + downloadUrlString + " for range support: " + e.getMessage());
+            metrics.increment("fallbacks");
+            return null;
+        } finally {
+            metrics.addPhase("probe", phaseStart);
+        }
+        if (segmentedDownload == null) {
+            return null;
+        }
+
+        try {
+            phaseStart = UpdateMetrics.now();
+            segmentedDownload.downloadTo(downloadFile, progressCallback, mBandwidthLimiter);
+            long transferTime = UpdateMetrics.now() - phaseStart;
+            metrics.addPhaseDuration("transfer", transferTime);
+            metrics.put("path", "segmented");
+            metrics.put("bytes", segmentedDownload.getTotalBytes());
+            metrics.put("bytesPerSecond", transferTime > 0 ? segmentedDownload.getTotalBytes() * 1000 / transferTime : 0);
+            if (expectedSha256 != null) {
+                // Segments land out of order, so the hash is taken once the file is complete
+                phaseStart = UpdateMetrics.now();
+                String actualSha256 = FileUtils.computeFileSha256(downloadFile);
+                metrics.addPhase("verify", phaseStart);
+                if (!expectedSha256.equalsIgnoreCase(actualSha256)) {
+                    throw new OTAInvalidUpdateException("Downloaded package hash " + actualSha256 +
+                            " does not match expected hash " + expectedSha256 + ".");
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            discardPartialDownload(downloadFile);
+            throw e;
+        }
+
+        return segmentedDownload;
+    }
+
+    private boolean tryDownloadPatch(JSONObject updatePackage, String expectedBundleFileName,
+                                     DownloadProgressCallback progressCallback, UpdateMetrics metrics) {
+        String patchUrlString = updatePackage.optString(OTAConstants.PATCH_URL_KEY, null);
+        String basePackageHash = updatePackage.optString(OTAConstants.BASE_PACKAGE_HASH_KEY, null);
+        String expectedBundleHash = updatePackage.optString(OTAConstants.BUNDLE_HASH_KEY, null);
+        if (patchUrlString == null || basePackageHash == null || expectedBundleHash == null) {
+            return false;
+        }
+
+        // Patches are built against a specific bundle, only the installed package can serve as the base
+        String basePackageFolderPath = getCurrentPackageFolderPath();
+        String baseBundlePath = getCurrentPackageBundlePath(expectedBundleFileName);
+        if (!basePackageHash.equals(getCurrentPackageHash()) ||
+            baseBundlePath == null || !FileUtils.fileAtPathExists(baseBundlePath)) {
+            OTAUtils.log("Base package " + basePackageHash + " is not installed, downloading the full update");
+            return false;
+        }
+
+        String packageHash = updatePackage.optString(OTAConstants.PACKAGE_HASH_KEY, null);
+        String newUpdateFolderPath = getPackageFolderPath(packageHash);
+        String stagingFolderPath = getPackageStagingFolderPath(packageHash);
+        String relativeBundlePath = readPackageField(basePackageHash, OTAConstants.RELATIVE_BUNDLE_PATH_KEY);
+        if (relativeBundlePath == null) {
+            relativeBundlePath = expectedBundleFileName;
+        }
+
+        HttpResponse response = null;
+        InputStream patchStream = null;
+        try {
+            long phaseStart = UpdateMetrics.now();
+            if (FileUtils.fileAtPathExists(stagingFolderPath)) {
+                FileUtils.deleteDirectoryAtPath(stagingFolderPath);
+            }
+            FileUtils.linkDirectoryContents(basePackageFolderPath, stagingFolderPath);
+
+            // The staged bundle is a link to the installed one, unlink it before writing the patched bundle
+            File newBundleFile = new File(stagingFolderPath, relativeBundlePath);
+            newBundleFile.delete();
+            metrics.addPhase("link", phaseStart);
+
+            phaseStart = UpdateMetrics.now();
+            response = mHttpTransport.execute(new URL(patchUrlString), createDownloadHeaders(0, null));
+            metrics.addPhase("connect", phaseStart);
+            ProgressInputStream progressStream = new ProgressInputStream(response.getBody(),
+                    response.getContentLength(), 0, progressCallback, mBandwidthLimiter);
+            patchStream = decodeContent(response, progressStream);
+
+            // Reading the patch and applying it are interleaved, so they are timed as one phase
+            phaseStart = UpdateMetrics.now();
+            BundlePatcher.applyPatch(new File(baseBundlePath), patchStream, newBundleFile, expectedBundleHash);
+            metrics.addPhase("patch", phaseStart);
+            metrics.put("path", "patch");
+            metrics.put("bytes", progressStream.getReceivedBytes());
+            metrics.put("bytesPerSecond", progressStream.getBytesPerSecond());
+
+            OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.RELATIVE_BUNDLE_PATH_KEY, relativeBundlePath);
+            File newMetadataFile = new File(stagingFolderPath, OTAConstants.PACKAGE_FILE_NAME);
+            newMetadataFile.delete();
+            writePackageMetadata(updatePackage, newMetadataFile.getAbsolutePath(), metrics);
+            publishStagingFolder(stagingFolderPath, newUpdateFolderPath, metrics);
+            return true;
+        } catch (Exception e) {
+            OTAUtils.log("Applying patch failed, downloading the full update: " + e.getMessage());
+            metrics.increment("fallbacks");
+            FileUtils.deleteDirectoryAtPath(stagingFolderPath);
+            return false;
+        } finally {
+            try {
+                if (patchStream != null) patchStream.close();
+            } catch (IOException e) {
+                OTAUtils.log(e);
+            }
+            if (response != null) response.close();
+        }
+    }
+
+    private boolean tryDownloadDiff(JSONObject updatePackage, String expectedBundleFileName,
+                                    DownloadProgressCallback progressCallback, UpdateMetrics metrics) {
+        JSONObject manifest = updatePackage.optJSONObject(OTAConstants.MANIFEST_KEY);
+        String diffUrlString = updatePackage.optString(OTAConstants.DIFF_URL_KEY, null);
+        if (manifest == null || diffUrlString == null) {
+            return false;
+        }
+
+        String basePackageHash = getCurrentPackageHash();
+        if (basePackageHash == null || !hasPackage(basePackageHash)) {
+            OTAUtils.log("No installed package to diff against, downloading the full update");
+            return false;
+        }
+        String basePackageFolderPath = getPackageFolderPath(basePackageHash);
+        JSONObject baseManifest = readPackageManifest(basePackageHash);
+
+        String packageHash = updatePackage.optString(OTAConstants.PACKAGE_HASH_KEY, null);
+        String newUpdateFolderPath = getPackageFolderPath(packageHash);
+        String stagingFolderPath = getPackageStagingFolderPath(packageHash);
+
+        HttpResponse response = null;
+        InputStream diffStream = null;
+        try {
+            // The diff archive only carries changed files, everything else comes from the installed package
+            long phaseStart = UpdateMetrics.now();
+            response = mHttpTransport.execute(new URL(diffUrlString), createDownloadHeaders(0, null));
+            metrics.addPhase("connect", phaseStart);
+            ProgressInputStream progressStream = new ProgressInputStream(response.getBody(),
+                    response.getContentLength(), 0, progressCallback, mBandwidthLimiter);
+            diffStream = new BufferedInputStream(decodeContent(response, progressStream), OTAConstants.DOWNLOAD_BUFFER_SIZE);
+            phaseStart = UpdateMetrics.now();
+            FileUtils.unzipStream(diffStream, stagingFolderPath);
+            metrics.addPhase("transfer", phaseStart);
+            metrics.put("path", "diff");
+            metrics.put("bytes", progressStream.getReceivedBytes());
+            metrics.put("bytesPerSecond", progressStream.getBytesPerSecond());
+
+            phaseStart = UpdateMetrics.now();
+            File stagingFolder = new File(stagingFolderPath);
+            File basePackageFolder = new File(basePackageFolderPath);
+            Iterator<String> relativePaths = manifest.keys();
+            while (relativePaths.hasNext()) {
+                String relativePath = relativePaths.next();
+                if (relativePath.equals(OTAConstants.PACKAGE_FILE_NAME)) {
+                    continue;
+                }
+
+                String expectedHash = manifest.optString(relativePath, "");
+                File stagedFile = new File(FileUtils.validateFileName(relativePath, stagingFolder));
+                if (stagedFile.exists()) {
+                    if (!expectedHash.equalsIgnoreCase(FileUtils.computeFileSha256(stagedFile))) {
+                        throw new OTAInvalidUpdateException("Diff update file " + relativePath + " does not match its manifest hash.");
+                    }
+                    continue;
+                }
+
+                File baseFile = new File(FileUtils.validateFileName(relativePath, basePackageFolder));
+                String baseHash = baseManifest != null ? baseManifest.optString(relativePath, null) : null;
+                if (baseHash == null && baseFile.isFile()) {
+                    baseHash = FileUtils.computeFileSha256(baseFile);
+                }
+                if (!baseFile.isFile() || !expectedHash.equalsIgnoreCase(baseHash)) {
+                    throw new OTAInvalidUpdateException("Diff update is missing changed file " + relativePath + ".");
+                }
+
+                FileUtils.linkOrCopyFile(baseFile, stagedFile);
+            }
+            metrics.addPhase("link", phaseStart);
+
+            phaseStart = UpdateMetrics.now();
+            String relativeBundlePath = findJSBundleInUpdateContents(stagingFolderPath, expectedBundleFileName);
+            metrics.addPhase("bundleSearch", phaseStart);
+            if (relativeBundlePath == null) {
+                throw new OTAInvalidUpdateException("Update is invalid - A JS bundle file named \"" + expectedBundleFileName + "\" could not be found within the diff contents.");
+            }
+
+            OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.RELATIVE_BUNDLE_PATH_KEY, relativeBundlePath);
+            writePackageMetadata(updatePackage,
+                    OTAUtils.appendPathComponent(stagingFolderPath, OTAConstants.PACKAGE_FILE_NAME), metrics);
+            publishStagingFolder(stagingFolderPath, newUpdateFolderPath, metrics);
+            return true;
+        } catch (Exception e) {
+            OTAUtils.log("Applying diff update failed, downloading the full update: " + e.getMessage());
+            metrics.increment("fallbacks");
+            FileUtils.deleteDirectoryAtPath(stagingFolderPath);
+            return false;
+        } finally {
+            try {
+                if (diffStream != null) diffStream.close();
+            } catch (IOException e) {
+                OTAUtils.log(e);
+            }
+            if (response != null) response.close();
+        }
+    }
+
+    private void writePackageMetadata(JSONObject updatePackage, String metadataPath, UpdateMetrics metrics) throws IOException {
+        long phaseStart = UpdateMetrics.now();
+        OTAUtils.writeJsonToFile(updatePackage, metadataPath);
+        metrics.addPhase("metadataWrite", phaseStart);
+    }
+
+    private void publishStagingFolder(String stagingFolderPath, String packageFolderPath, UpdateMetrics metrics) throws IOException {
+        long phaseStart = UpdateMetrics.now();
+        publishStagingFolder(stagingFolderPath, packageFolderPath);
+        metrics.addPhase("publish", phaseStart);
+    }
+
+    private void publishStagingFolder(String stagingFolderPath, String packageFolderPath) throws IOException {
+        invalidateCachedPackage(new File(packageFolderPath).getName());
+        if (mContentAddressedStoreEnabled) {
+            mAssetStore.ingestDirectory(stagingFolderPath);
+        }
+
+        if (FileUtils.fileAtPathExists(packageFolderPath)) {
+            FileUtils.deleteDirectoryAtPath(packageFolderPath);
+        }
+        FileUtils.renameDirectory(stagingFolderPath, packageFolderPath);
+    }
+
+    private Map<String, String> createDownloadHeaders(long resumeOffset, JSONObject resumeInfo) {
+        Map<String, String> headers = new HashMap<>();
+        if (resumeOffset > 0 && resumeInfo != null) {
+            // If-Range makes the server send the full body instead of a range when the artifact changed
+            String validator = resumeInfo.optString(OTAConstants.DOWNLOAD_ETAG_KEY, null);
+            if (validator == null) {
+                validator = resumeInfo.optString(OTAConstants.DOWNLOAD_LAST_MODIFIED_KEY, null);
+            }
+            headers.put("Accept-Encoding", "identity");
+            headers.put("Range", "bytes=" + resumeOffset + "-");
+            headers.put("If-Range", validator);
+        } else {
+            // Whole-body requests can be compressed in transit, ranges always stay identity encoded
+            headers.put("Accept-Encoding", OTAConstants.ACCEPTED_CONTENT_ENCODINGS);
+        }
+
+        return headers;
+    }
+
+    private static boolean isContentEncoded(HttpResponse response) {
+        String contentEncoding = response.getHeader("Content-Encoding");
+        return contentEncoding != null && !contentEncoding.equalsIgnoreCase("identity");
+    }
+
+    private static InputStream decodeContent(HttpResponse response, ProgressInputStream progressStream) throws IOException {
+        if (!isContentEncoded(response)) {
+            return progressStream;
+        }
+
+        String contentEncoding = response.getHeader("Content-Encoding").trim().toLowerCase(Locale.US);
+        if (contentEncoding.equals("gzip") || contentEncoding.equals("x-gzip")) {
+            return progressStream.countDecodedBytes(new GZIPInputStream(progressStream, OTAConstants.DOWNLOAD_BUFFER_SIZE));
+        } else if (contentEncoding.equals("deflate")) {
+            return progressStream.countDecodedBytes(new InflaterInputStream(progressStream,
+                    new Inflater(), OTAConstants.DOWNLOAD_BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    inf.end();
+                }
+            });
+        }
+
+        throw new OTAUnknownException("Unsupported content encoding " + contentEncoding);
+    }
+
+    static long getContentRangeStart(HttpResponse response) {
+        // Content-Range: bytes <start>-<end>/<total>
+        String contentRange = response.getHeader("Content-Range");
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            return -1;
+        }
+
+        int dashIndex = contentRange.indexOf('-');
+        if (dashIndex < 0) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(contentRange.substring("bytes ".length(), dashIndex).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private JSONObject getDownloadResumeInfo(String downloadUrlString) {
+        String resumeInfoPath = getDownloadResumeInfoPath();
+        if (!FileUtils.fileAtPathExists(resumeInfoPath)) {
+            return null;
+        }
+
+        try {
+            JSONObject resumeInfo = OTAUtils.getJsonObjectFromFile(resumeInfoPath);
+            if (!downloadUrlString.equals(resumeInfo.optString(OTAConstants.DOWNLOAD_URL_KEY, null))) {
+                return null;
+            }
+
+            if (resumeInfo.optString(OTAConstants.DOWNLOAD_ETAG_KEY, null) == null &&
+                resumeInfo.optString(OTAConstants.DOWNLOAD_LAST_MODIFIED_KEY, null) == null) {
+                return null;
+            }
+
+            return resumeInfo;
+        } catch (Exception e) {
+            OTAUtils.log("Ignoring unreadable download resume info: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void saveDownloadResumeInfo(String downloadUrlString, HttpResponse response) throws IOException {
+        String etag = response.getHeader("ETag");
+        String lastModified = response.getHeader("Last-Modified");
+        String resumeInfoPath = getDownloadResumeInfoPath();
+
+        // Weak validators can't be used with If-Range, so such downloads are not resumable
+        if (etag != null && etag.startsWith("W/")) {
+            etag = null;
+        }
+        if (etag == null && lastModified == null) {
+            deleteDownloadResumeInfo();
+            return;
+        }
+
+        JSONObject resumeInfo = new JSONObject();
+        OTAUtils.setJSONValueForKey(resumeInfo, OTAConstants.DOWNLOAD_URL_KEY, downloadUrlString);
+        OTAUtils.setJSONValueForKey(resumeInfo, OTAConstants.DOWNLOAD_ETAG_KEY, etag);
+        OTAUtils.setJSONValueForKey(resumeInfo, OTAConstants.DOWNLOAD_LAST_MODIFIED_KEY, lastModified);
+        OTAUtils.writeJsonToFile(resumeInfo, resumeInfoPath);
+    }
+
+    private void discardPartialDownload(File downloadFile) {
+        if (downloadFile.exists()) {
+            FileUtils.deleteFileOrFolderSilently(downloadFile);
+        }
+        deleteDownloadResumeInfo();
+    }
+
+    private void deleteDownloadResumeInfo() {
+        String resumeInfoPath = getDownloadResumeInfoPath();
+        if (FileUtils.fileAtPathExists(resumeInfoPath)) {
+            FileUtils.deleteFileAtPathSilently(resumeInfoPath);
+        }
+    }
+
+    private boolean peekHeader(BufferedInputStream inputStream, byte[] header) throws IOException {
+        inputStream.mark(header.length);
+        try {
+            int offset = 0;
+            int numBytesRead;
+            while (offset < header.length && (numBytesRead = inputStream.read(header, offset, header.length - offset)) > 0) {
+                offset += numBytesRead;
+            }
+            return offset == header.length;
+        } finally {
+            inputStream.reset();
+        }
+    }
+
+    private void readFileHeader(File file, byte[] header) throws IOException {
+        FileInputStream fin = new FileInputStream(file);
+        try {
+            int offset = 0;
+            int numBytesRead;
+            while (offset < header.length && (numBytesRead = fin.read(header, offset, header.length - offset)) > 0) {
+                offset += numBytesRead;
+            }
+        } finally {
+            fin.close();
+        }
+    }
+
+    private String findJSBundleInUpdateContents(String updateFolderPath, String expectedBundleFileName) {
+        File updateFolder = new File(updateFolderPath);
+        if (!updateFolder.exists() || !updateFolder.isDirectory()) {
+            return null;
+        }
+
+        File[] files = updateFolder.listFiles();
+        if (files == null) {
+            return null;
+        }
+
+        // First, check root level
+        for (File file : files) {
+            if (file.isFile() && file.getName().equals(expectedBundleFileName)) {
+                return file.getName();
+            }
+        }
+
+        // Then check subdirectories recursively
+        for (File file : files) {
+            if (file.isDirectory()) {
+                String found = findJSBundleInUpdateContents(file.getAbsolutePath(), expectedBundleFileName);
+                if (found != null) {
+                    return file.getName() + "/" + found;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    public String getCurrentBundlePath() {
+        return getCurrentPackageBundlePath(mBundleFileName);
+    }
+
+    public void installPackage(JSONObject updatePackage, boolean removePendingUpdate) {
+        String packageHash = updatePackage.optString(OTAConstants.PACKAGE_HASH_KEY, null);
+        String droppedPackageHash = null;
+        UpdateMetrics metrics = new UpdateMetrics(UpdateMetrics.TYPE_INSTALL, packageHash);
+        long phaseStart = UpdateMetrics.now();
+        synchronized (sMetadataLock) {
+            JSONObject info = getCurrentPackageInfo();
+
+            String currentPackageHash = info.optString(OTAConstants.CURRENT_PACKAGE_KEY, null);
+            if (packageHash != null && packageHash.equals(currentPackageHash)) {
+                // Nothing to install, the entry still shows the request was made
+                metrics.put("path", "alreadyCurrent");
+                metrics.finish();
+                return;
+            }
+
+            if (removePendingUpdate) {
+                droppedPackageHash = currentPackageHash;
+            } else {
+                String previousPackageHash = info.optString(OTAConstants.PREVIOUS_PACKAGE_KEY, null);
+                if (previousPackageHash != null && !previousPackageHash.equals(packageHash)) {
+                    droppedPackageHash = previousPackageHash;
+                }
+
+                OTAUtils.setJSONValueForKey(info, OTAConstants.PREVIOUS_PACKAGE_KEY, currentPackageHash);
+            }
+
+            OTAUtils.setJSONValueForKey(info, OTAConstants.CURRENT_PACKAGE_KEY, packageHash);
+            updateCurrentPackageInfo(info);
+            synchronized (sActiveDownloads) {
+                if (packageHash != null && packageHash.equals(sDownloadedPackageHash)) {
+                    sDownloadedPackageHash = null;
+                }
+            }
+            if (droppedPackageHash != null) {
+                mCachedPackages.remove(droppedPackageHash);
+            }
+        }
+        metrics.addPhase("metadataWrite", phaseStart);
+
+        // The status no longer points at the dropped package, so it can go without holding up lookups
+        phaseStart = UpdateMetrics.now();
+        if (droppedPackageHash != null) {
+            FileUtils.deleteDirectoryAtPath(getPackageFolderPath(droppedPackageHash));
+        }
+
+        if (droppedPackageHash != null) {
+            mPackageIndex.remove(droppedPackageHash);
+        }
+        if (packageHash != null) {
+            mPackageIndex.touch(packageHash);
+        }
+
+        // Stored files that only the dropped package linked to are now unreferenced
+        long freedBytes = mAssetStore.collectGarbage();
+        if (freedBytes > 0) {
+            OTAUtils.log("Reclaimed " + freedBytes + " bytes from the asset store");
+        }
+        metrics.addPhase("cleanup", phaseStart);
+        metrics.put("freedBytes", freedBytes);
+        metrics.finish();
+        scheduleGarbageCollection();
+    }
+
+    public void scheduleGarbageCollection() {
+        if (!mIsCollectionScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        OTAExecutor.getInstance().executeIo(new Runnable() {
+            @Override
+            public void run() {
+                mIsCollectionScheduled.set(false);
+                try {
+                    collectGarbage();
+                } catch (Exception e) {
+                    OTAUtils.log(e);
+                }
+            }
+        });
+    }
+
+    // Removes abandoned staging folders, then evicts least recently used packages one at a time
+    // until the retention policy holds. Returns the number of bytes freed.
+    public long collectGarbage() {
+        File[] entries = new File(getOTAPath()).listFiles();
+        if (entries == null) {
+            return 0;
+        }
+
+        long freedBytes = 0;
+        List<String> packageHashes = new ArrayList<>();
+        for (File entry : entries) {
+            String name = entry.getName();
+            if (!entry.isDirectory() || name.equals(OTAConstants.ASSET_STORE_FOLDER_NAME)) {
+                continue;
+            }
+
+            if (name.endsWith(OTAConstants.STAGING_FOLDER_SUFFIX)) {
+                String packageHash = name.substring(0, name.length() - OTAConstants.STAGING_FOLDER_SUFFIX.length());
+                File trashFolder = new File(getOTAPath(), packageHash + OTAConstants.TRASH_FOLDER_SUFFIX);
+                if (trashFolder.exists()) {
+                    FileUtils.deleteFileOrFolderSilently(trashFolder);
+                }
+                synchronized (sActiveDownloads) {
+                    // Left behind by a failed or abandoned download
+                    if (sActiveDownloads.contains(packageHash) || !entry.renameTo(trashFolder)) {
+                        continue;
+                    }
+                }
+                freedBytes += FileUtils.getDirectorySize(trashFolder);
+                FileUtils.deleteFileOrFolderSilently(trashFolder);
+            } else if (name.endsWith(OTAConstants.TRASH_FOLDER_SUFFIX)) {
+                freedBytes += FileUtils.getDirectorySize(entry);
+                FileUtils.deleteFileOrFolderSilently(entry);
+            } else {
+                packageHashes.add(name);
+            }
+        }
+
+        mPackageIndex.reconcile(packageHashes);
+        // Packages whose folder couldn't be moved aside stay indexed and are skipped from now on
+        Set<String> unmovableHashes = new HashSet<>();
+        while (true) {
+            File trashFolder;
+            long packageBytes;
+            synchronized (sMetadataLock) {
+                Set<String> protectedHashes;
+                synchronized (sActiveDownloads) {
+                    protectedHashes = new HashSet<>(sActiveDownloads);
+                    protectedHashes.add(sDownloadedPackageHash);
+                }
+                protectedHashes.addAll(unmovableHashes);
+                // The cached status can be stale when another instance installed since it was read
+                mCachedPackageInfo = readCurrentPackageInfo();
+                protectedHashes.add(mCachedPackageInfo.optString(OTAConstants.CURRENT_PACKAGE_KEY, null));
+                protectedHashes.add(mCachedPackageInfo.optString(OTAConstants.PREVIOUS_PACKAGE_KEY, null));
+                long storeBytes = mContentAddressedStoreEnabled ? mAssetStore.getTotalBytes() : 0;
+                String packageHash = mPackageIndex.findEvictionCandidate(protectedHashes, mMaxPackages,
+                        mMaxStorageBytes, storeBytes);
+                if (packageHash == null) {
+                    break;
+                }
+
+                // Move the folder aside under the lock so an install can't pick it up half deleted
+                trashFolder = new File(getOTAPath(), packageHash + OTAConstants.TRASH_FOLDER_SUFFIX);
+                if (trashFolder.exists()) {
+                    FileUtils.deleteFileOrFolderSilently(trashFolder);
+                }
+                if (!new File(getPackageFolderPath(packageHash)).renameTo(trashFolder)) {
+                    OTAUtils.log("Unable to move package " + packageHash + " aside, keeping it");
+                    unmovableHashes.add(packageHash);
+                    continue;
+                }
+                mCachedPackages.remove(packageHash);
+                packageBytes = mPackageIndex.remove(packageHash);
+                OTAUtils.log("Evicting package " + packageHash + " (" + packageBytes + " bytes)");
+            }
+
+            if (trashFolder.exists()) {
+                FileUtils.deleteFileOrFolderSilently(trashFolder);
+            }
+            freedBytes += packageBytes;
+            if (mContentAddressedStoreEnabled) {
+                // Stored files only the evicted package used count against the limit until they're gone
+                freedBytes += mAssetStore.collectGarbage();
+            }
+        }
+
+        freedBytes += mAssetStore.collectGarbage();
+        if (freedBytes > 0) {
+            OTAUtils.log("Garbage collection freed " + freedBytes + " bytes, packages use " +
+                    mPackageIndex.getTotalBytes() + " bytes");
+        }
+        return freedBytes;
+    }
+
+    public void clearUpdates() {
+        synchronized (sMetadataLock) {
+            FileUtils.deleteDirectoryAtPath(getOTAPath());
+            mCachedPackageInfo = null;
+            mCachedPackages.clear();
+            mPackageIndex.reset();
+            synchronized (sActiveDownloads) {
+                sDownloadedPackageHash = null;
+            }
+        }
+    }
+}
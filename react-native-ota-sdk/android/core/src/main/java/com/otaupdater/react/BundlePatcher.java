@@ -0,0 +1,147 @@
+package com.otaupdater.react;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Applies bsdiff-style patches in a single streaming pass.
+ *
+ * Patch layout: the 8 byte magic "OTADIFF1", the new file size, then a zlib stream of
+ * records. Each record holds three control values (diff length, extra length, old file
+ * seek adjustment) followed by the diff bytes, which are added to the old file bytes,
+ * and the extra bytes, which are copied as is. Integers use the bsdiff 8 byte
+ * sign-magnitude little-endian encoding.
+ */
+public class BundlePatcher {
+
+    private static final byte[] PATCH_MAGIC = "OTADIFF1".getBytes();
+    private static final int PATCH_BUFFER_SIZE = 1024 * 64;
+
+    public static void applyPatch(File oldFile, InputStream patchStream, File newFile, String expectedSha256) throws IOException {
+        byte[] header = new byte[PATCH_MAGIC.length];
+        readFully(patchStream, header, 0, header.length);
+        if (!Arrays.equals(header, PATCH_MAGIC)) {
+            throw new OTAInvalidUpdateException("Patch is invalid - unrecognized header.");
+        }
+
+        byte[] number = new byte[8];
+        readFully(patchStream, number, 0, number.length);
+        long newSize = readOffset(number);
+        if (newSize < 0) {
+            throw new OTAInvalidUpdateException("Patch is invalid - negative output size.");
+        }
+
+        MessageDigest digest = OTAUtils.createSha256Digest();
+
+        RandomAccessFile oldData = new RandomAccessFile(oldFile, "r");
+        OutputStream out = new DigestOutputStream(
+                new BufferedOutputStream(new FileOutputStream(newFile), PATCH_BUFFER_SIZE), digest);
+        Inflater inflater = new Inflater();
+        InputStream controlStream = new BufferedInputStream(new InflaterInputStream(patchStream, inflater), PATCH_BUFFER_SIZE);
+        try {
+            long oldSize = oldData.length();
+            long oldPosition = 0;
+            long newPosition = 0;
+            byte[] diffBuffer = new byte[PATCH_BUFFER_SIZE];
+            byte[] oldBuffer = new byte[PATCH_BUFFER_SIZE];
+
+            while (newPosition < newSize) {
+                readFully(controlStream, number, 0, number.length);
+                long diffLength = readOffset(number);
+                readFully(controlStream, number, 0, number.length);
+                long extraLength = readOffset(number);
+                readFully(controlStream, number, 0, number.length);
+                long seekAdjustment = readOffset(number);
+
+                if (diffLength < 0 || extraLength < 0 || newPosition + diffLength + extraLength > newSize) {
+                    throw new OTAInvalidUpdateException("Patch is invalid - corrupt control record.");
+                }
+
+                long remaining = diffLength;
+                while (remaining > 0) {
+                    int chunk = (int) Math.min(remaining, PATCH_BUFFER_SIZE);
+                    readFully(controlStream, diffBuffer, 0, chunk);
+
+                    // Bytes before the start or past the end of the old file count as zero, like bsdiff
+                    Arrays.fill(oldBuffer, 0, chunk, (byte) 0);
+                    int start = (int) Math.min(chunk, Math.max(0, -oldPosition));
+                    long readPosition = Math.max(0, oldPosition);
+                    if (start < chunk && readPosition < oldSize) {
+                        oldData.seek(readPosition);
+                        int available = (int) Math.min(chunk - start, oldSize - readPosition);
+                        oldData.readFully(oldBuffer, start, available);
+                    }
+
+                    for (int i = 0; i < chunk; i++) {
+                        diffBuffer[i] += oldBuffer[i];
+                    }
+                    out.write(diffBuffer, 0, chunk);
+
+                    oldPosition += chunk;
+                    remaining -= chunk;
+                }
+                newPosition += diffLength;
+
+                remaining = extraLength;
+                while (remaining > 0) {
+                    int chunk = (int) Math.min(remaining, PATCH_BUFFER_SIZE);
+                    readFully(controlStream, diffBuffer, 0, chunk);
+                    out.write(diffBuffer, 0, chunk);
+                    remaining -= chunk;
+                }
+                newPosition += extraLength;
+
+                oldPosition += seekAdjustment;
+            }
+
+            out.flush();
+        } finally {
+            // The caller owns patchStream, so only the inflater's native memory is released here
+            inflater.end();
+            try {
+                out.close();
+                oldData.close();
+            } catch (IOException e) {
+                throw new OTAUnknownException("Error closing IO resources.", e);
+            }
+        }
+
+        String actualSha256 = OTAUtils.bytesToHex(digest.digest());
+        if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(actualSha256)) {
+            throw new OTAInvalidUpdateException("Patched bundle hash " + actualSha256 +
+                    " does not match expected hash " + expectedSha256 + ".");
+        }
+    }
+
+    private static long readOffset(byte[] buffer) {
+        long value = buffer[7] & 0x7F;
+        for (int i = 6; i >= 0; i--) {
+            value = (value << 8) | (buffer[i] & 0xFF);
+        }
+
+        return (buffer[7] & 0x80) != 0 ? -value : value;
+    }
+
+    private static void readFully(InputStream inputStream, byte[] buffer, int offset, int length) throws IOException {
+        while (length > 0) {
+            int numBytesRead = inputStream.read(buffer, offset, length);
+            if (numBytesRead < 0) {
+                throw new EOFException("Unexpected end of patch data.");
+            }
+            offset += numBytesRead;
+            length -= numBytesRead;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.otaupdater.react;
+
+import org.json.JSONArray;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Reads a bundle and its listed assets once so the following reload finds them in the page
+ * cache. Missing or unreadable files are skipped, the loader reports real read errors.
+ */
+public class BundlePrewarmer {
+
+    // Returns the number of bytes read, 0 for bundles that ship inside the APK
+    public static long prewarm(String bundlePath, JSONArray assetPaths) {
+        if (bundlePath.regionMatches(true, 0, OTAConstants.ASSETS_BUNDLE_PREFIX, 0,
+                OTAConstants.ASSETS_BUNDLE_PREFIX.length())) {
+            return 0;
+        }
+
+        File bundleFile = new File(bundlePath.startsWith("file://") ? bundlePath.substring("file://".length()) : bundlePath);
+        long bytesRead = prewarmFile(bundleFile);
+        if (assetPaths != null) {
+            // Asset paths are relative to the folder holding the bundle
+            File packageFolder = bundleFile.getParentFile();
+            for (int i = 0; i < assetPaths.length(); i++) {
+                String assetPath = assetPaths.optString(i);
+                if (!assetPath.isEmpty() && packageFolder != null) {
+                    bytesRead += prewarmFile(new File(packageFolder, assetPath));
+                }
+            }
+        }
+
+        return bytesRead;
+    }
+
+    private static long prewarmFile(File file) {
+        if (!file.isFile()) {
+            OTAUtils.log("Skipping prewarm of missing file " + file.getName());
+            return 0;
+        }
+
+        try {
+            return FileUtils.readFileFully(file);
+        } catch (IOException e) {
+            OTAUtils.log("Unable to prewarm " + file.getName() + ": " + e.getMessage());
+            return 0;
+        }
+    }
+}
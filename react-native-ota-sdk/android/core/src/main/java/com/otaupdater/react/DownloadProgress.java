@@ -0,0 +1,47 @@
+package com.otaupdater.react;
+
+public class DownloadProgress {
+    private long mTotalBytes;
+    private long mReceivedBytes;
+    private long mDecodedBytes;
+    private long mBytesPerSecond;
+
+    public DownloadProgress(long totalBytes, long receivedBytes) {
+        update(totalBytes, receivedBytes);
+    }
+
+    public void update(long totalBytes, long receivedBytes) {
+        update(totalBytes, receivedBytes, receivedBytes);
+    }
+
+    // Received and total bytes count what came over the wire, decoded bytes what the body inflated to
+    public void update(long totalBytes, long receivedBytes, long decodedBytes) {
+        mTotalBytes = totalBytes;
+        mReceivedBytes = receivedBytes;
+        mDecodedBytes = decodedBytes;
+    }
+
+    public long getTotalBytes() {
+        return mTotalBytes;
+    }
+
+    public long getReceivedBytes() {
+        return mReceivedBytes;
+    }
+
+    public long getDecodedBytes() {
+        return mDecodedBytes;
+    }
+
+    public long getBytesPerSecond() {
+        return mBytesPerSecond;
+    }
+
+    public void setBytesPerSecond(long bytesPerSecond) {
+        mBytesPerSecond = bytesPerSecond;
+    }
+
+    public boolean isCompleted() {
+        return mTotalBytes == mReceivedBytes;
+    }
+}
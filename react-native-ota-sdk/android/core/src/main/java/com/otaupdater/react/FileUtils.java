@@ -0,0 +1,491 @@
+package com.otaupdater.react;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+public class FileUtils {
+
+    private static final int MAX_UNZIP_THREADS = 4;
+    private static final int MIN_ENTRIES_PER_UNZIP_THREAD = 8;
+    private static final int WRITE_BUFFER_SIZE = 1024 * 8;
+    private static final int SEQUENTIAL_READ_BUFFER_SIZE = 1024 * 256;
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public static void copyDirectoryContents(String sourceDirectoryPath, String destinationDirectoryPath) throws IOException {
+        File sourceDir = new File(sourceDirectoryPath);
+        File destDir = new File(destinationDirectoryPath);
+        if (!destDir.exists()) {
+            destDir.mkdir();
+        }
+
+        for (File sourceFile : sourceDir.listFiles()) {
+            if (sourceFile.isDirectory()) {
+                copyDirectoryContents(
+                        OTAUtils.appendPathComponent(sourceDirectoryPath, sourceFile.getName()),
+                        OTAUtils.appendPathComponent(destinationDirectoryPath, sourceFile.getName()));
+            } else {
+                copyFile(sourceFile, new File(destDir, sourceFile.getName()));
+            }
+        }
+    }
+
+    public static void copyFile(File sourceFile, File destFile) throws IOException {
+        FileInputStream fromFileStream = null;
+        BufferedInputStream fromBufferedStream = null;
+        FileOutputStream destStream = null;
+        byte[] buffer = new byte[WRITE_BUFFER_SIZE];
+        try {
+            fromFileStream = new FileInputStream(sourceFile);
+            fromBufferedStream = new BufferedInputStream(fromFileStream);
+            destStream = new FileOutputStream(destFile);
+            int bytesRead;
+            while ((bytesRead = fromBufferedStream.read(buffer)) > 0) {
+                destStream.write(buffer, 0, bytesRead);
+            }
+        } finally {
+            try {
+                if (fromFileStream != null) fromFileStream.close();
+                if (fromBufferedStream != null) fromBufferedStream.close();
+                if (destStream != null) destStream.close();
+            } catch (IOException e) {
+                throw new OTAUnknownException("Error closing IO resources.", e);
+            }
+        }
+    }
+
+    public static void linkOrCopyFile(File sourceFile, File destFile) throws IOException {
+        File parent = destFile.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+
+        // Package files are never modified in place, so a hard link is as good as a copy
+        try {
+            OTAUtils.getPlatform().link(sourceFile, destFile);
+        } catch (IOException e) {
+            copyFile(sourceFile, destFile);
+        }
+    }
+
+    public static void linkDirectoryContents(String sourceDirectoryPath, String destinationDirectoryPath) throws IOException {
+        File sourceDir = new File(sourceDirectoryPath);
+        File destDir = new File(destinationDirectoryPath);
+        if (!destDir.exists()) {
+            destDir.mkdirs();
+        }
+
+        for (File sourceFile : sourceDir.listFiles()) {
+            if (sourceFile.isDirectory()) {
+                linkDirectoryContents(sourceFile.getAbsolutePath(), new File(destDir, sourceFile.getName()).getAbsolutePath());
+            } else {
+                linkOrCopyFile(sourceFile, new File(destDir, sourceFile.getName()));
+            }
+        }
+    }
+
+    public static String computeFileSha256(File file) throws IOException {
+        MessageDigest digest = OTAUtils.createSha256Digest();
+        updateDigestFromFile(digest, file);
+        return OTAUtils.bytesToHex(digest.digest());
+    }
+
+    public static void updateDigestFromFile(MessageDigest digest, File file) throws IOException {
+        FileInputStream fin = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[WRITE_BUFFER_SIZE];
+            int numBytesRead;
+            while ((numBytesRead = fin.read(buffer)) != -1) {
+                digest.update(buffer, 0, numBytesRead);
+            }
+        } finally {
+            fin.close();
+        }
+    }
+
+    public static void deleteDirectoryAtPath(String directoryPath) {
+        if (directoryPath == null) {
+            OTAUtils.log("deleteDirectoryAtPath attempted with null directoryPath");
+            return;
+        }
+        File file = new File(directoryPath);
+        if (file.exists()) {
+            deleteFileOrFolderSilently(file);
+        }
+    }
+
+    public static void deleteFileAtPathSilently(String path) {
+        deleteFileOrFolderSilently(new File(path));
+    }
+
+    public static void deleteFileOrFolderSilently(File file) {
+        if (file.isDirectory()) {
+            File[] files = file.listFiles();
+            if (files != null) {
+                for (File fileEntry : files) {
+                    if (fileEntry.isDirectory()) {
+                        deleteFileOrFolderSilently(fileEntry);
+                    } else {
+                        fileEntry.delete();
+                    }
+                }
+            }
+        }
+
+        if (!file.delete()) {
+            OTAUtils.log("Error deleting file " + file.getName());
+        }
+    }
+
+    public static long getDirectorySize(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+
+        long size = 0;
+        for (File file : files) {
+            size += file.isDirectory() ? getDirectorySize(file) : file.length();
+        }
+        return size;
+    }
+
+    // Like getDirectorySize, but skips files that are hard-linked from somewhere else as well
+    public static long getUnsharedDirectorySize(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+
+        long size = 0;
+        for (File file : files) {
+            if (file.isDirectory()) {
+                size += getUnsharedDirectorySize(file);
+                continue;
+            }
+
+            try {
+                if (OTAUtils.getPlatform().getLinkCount(file) > 1) {
+                    continue;
+                }
+            } catch (IOException e) {
+                // Without link counts every file counts as the directory's own
+            }
+            size += file.length();
+        }
+        return size;
+    }
+
+    public static boolean fileAtPathExists(String filePath) {
+        return new File(filePath).exists();
+    }
+
+    public static void moveFile(File fileToMove, String newFolderPath, String newFileName) {
+        File newFolder = new File(newFolderPath);
+        if (!newFolder.exists()) {
+            newFolder.mkdirs();
+        }
+
+        File newFilePath = new File(newFolderPath, newFileName);
+        if (!fileToMove.renameTo(newFilePath)) {
+            throw new OTAUnknownException("Unable to move file from " +
+                    fileToMove.getAbsolutePath() + " to " + newFilePath.getAbsolutePath() + ".");
+        }
+    }
+
+    public static void renameDirectory(String sourceDirectoryPath, String destinationDirectoryPath) {
+        File sourceDir = new File(sourceDirectoryPath);
+        File destDir = new File(destinationDirectoryPath);
+        if (!sourceDir.renameTo(destDir)) {
+            throw new OTAUnknownException("Unable to rename directory from " +
+                    sourceDir.getAbsolutePath() + " to " + destDir.getAbsolutePath() + ".");
+        }
+    }
+
+    public static String readFileToString(String filePath) throws IOException {
+        FileInputStream fin = new FileInputStream(filePath);
+        try {
+            long length = fin.getChannel().size();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("File " + filePath + " is too large to read into memory.");
+            }
+
+            byte[] buffer = new byte[(int) length];
+            int offset = 0;
+            while (offset < buffer.length) {
+                int numBytesRead = fin.read(buffer, offset, buffer.length - offset);
+                if (numBytesRead < 0) {
+                    throw new EOFException("File " + filePath + " was truncated while reading.");
+                }
+                offset += numBytesRead;
+            }
+
+            return new String(buffer, UTF_8);
+        } finally {
+            fin.close();
+        }
+    }
+
+    // Reads the whole file and discards the bytes, returns the number of bytes read
+    public static long readFileFully(File file) throws IOException {
+        FileInputStream fin = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[SEQUENTIAL_READ_BUFFER_SIZE];
+            long totalBytesRead = 0;
+            int numBytesRead;
+            while ((numBytesRead = fin.read(buffer)) != -1) {
+                totalBytesRead += numBytesRead;
+            }
+            return totalBytesRead;
+        } finally {
+            fin.close();
+        }
+    }
+
+    public static String validateFileName(String fileName, File destinationFolder) throws IOException {
+        String destinationFolderCanonicalPath = destinationFolder.getCanonicalPath() + File.separator;
+
+        File file = new File(destinationFolderCanonicalPath, fileName);
+        String canonicalPath = file.getCanonicalPath();
+
+        if (!canonicalPath.startsWith(destinationFolderCanonicalPath)) {
+            throw new IllegalStateException("File is outside extraction target directory.");
+        }
+
+        return canonicalPath;
+    }
+
+    public static void unzipFile(File zipFile, String destination) throws IOException {
+        int threadCount = Math.min(Runtime.getRuntime().availableProcessors(), MAX_UNZIP_THREADS);
+        unzipFile(zipFile, destination, threadCount);
+    }
+
+    public static void unzipFile(File zipFile, String destination, int threadCount) throws IOException {
+        final ZipFile archive = new ZipFile(zipFile);
+        List<FutureTask<Void>> results = new ArrayList<>();
+        try {
+            File destinationFolder = new File(destination);
+            if (destinationFolder.exists()) {
+                deleteFileOrFolderSilently(destinationFolder);
+            }
+
+            destinationFolder.mkdirs();
+
+            // Validate every entry and create the directory tree up front so workers only write files
+            final List<ZipEntry> fileEntries = new ArrayList<>();
+            final List<File> files = new ArrayList<>();
+            List<ZipEntry> directoryEntries = new ArrayList<>();
+            SortedSet<String> directories = new TreeSet<>();
+            Enumeration<? extends ZipEntry> entries = archive.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                File file = new File(validateFileName(entry.getName(), destinationFolder));
+                if (entry.isDirectory()) {
+                    directories.add(file.getPath());
+                    directoryEntries.add(entry);
+                } else {
+                    directories.add(file.getParent());
+                    fileEntries.add(entry);
+                    files.add(file);
+                }
+            }
+
+            for (String directory : directories) {
+                new File(directory).mkdirs();
+            }
+
+            if (threadCount <= 1 || fileEntries.size() < MIN_ENTRIES_PER_UNZIP_THREAD * 2) {
+                byte[] buffer = new byte[WRITE_BUFFER_SIZE];
+                for (int i = 0; i < fileEntries.size(); i++) {
+                    extractZipEntry(archive, fileEntries.get(i), files.get(i), buffer);
+                }
+            } else {
+                // Workers run on the SDK's shared worker lane instead of a pool created per archive
+                int workerCount = Math.min(threadCount, fileEntries.size() / MIN_ENTRIES_PER_UNZIP_THREAD);
+                final AtomicInteger nextEntry = new AtomicInteger();
+                for (int i = 0; i < workerCount; i++) {
+                    FutureTask<Void> result = new FutureTask<>(new Callable<Void>() {
+                        @Override
+                        public Void call() throws IOException {
+                            byte[] buffer = new byte[WRITE_BUFFER_SIZE];
+                            int index;
+                            while ((index = nextEntry.getAndIncrement()) < fileEntries.size()) {
+                                if (Thread.currentThread().isInterrupted()) {
+                                    throw new InterruptedIOException("Extraction cancelled");
+                                }
+                                extractZipEntry(archive, fileEntries.get(index), files.get(index), buffer);
+                            }
+                            return null;
+                        }
+                    });
+                    results.add(result);
+                    OTAExecutor.getInstance().executeWorker(result);
+                }
+
+                for (FutureTask<Void> result : results) {
+                    try {
+                        result.get();
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        if (cause instanceof IOException) {
+                            throw (IOException) cause;
+                        } else if (cause instanceof RuntimeException) {
+                            throw (RuntimeException) cause;
+                        }
+                        throw new OTAUnknownException("Error extracting zip entry.", cause);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while extracting " + zipFile.getName());
+                    }
+                }
+            }
+
+            for (ZipEntry entry : directoryEntries) {
+                long time = entry.getTime();
+                if (time > 0) {
+                    new File(validateFileName(entry.getName(), destinationFolder)).setLastModified(time);
+                }
+            }
+        } finally {
+            // Stops workers that are still extracting after another one failed
+            for (FutureTask<Void> result : results) {
+                result.cancel(true);
+            }
+            try {
+                archive.close();
+            } catch (IOException e) {
+                throw new OTAUnknownException("Error closing IO resources.", e);
+            }
+        }
+    }
+
+    private static void extractZipEntry(ZipFile archive, ZipEntry entry, File file, byte[] buffer) throws IOException {
+        InputStream entryStream = archive.getInputStream(entry);
+        FileOutputStream fout = null;
+        try {
+            fout = new FileOutputStream(file);
+            int numBytesRead;
+            while ((numBytesRead = entryStream.read(buffer)) != -1) {
+                fout.write(buffer, 0, numBytesRead);
+            }
+        } finally {
+            if (fout != null) fout.close();
+            entryStream.close();
+        }
+
+        long time = entry.getTime();
+        if (time > 0) {
+            file.setLastModified(time);
+        }
+    }
+
+    public static void unzipStream(InputStream inputStream, String destination) throws IOException {
+        ZipInputStream zipStream = null;
+        try {
+            zipStream = new ZipInputStream(inputStream);
+            ZipEntry entry;
+
+            File destinationFolder = new File(destination);
+            if (destinationFolder.exists()) {
+                deleteFileOrFolderSilently(destinationFolder);
+            }
+
+            destinationFolder.mkdirs();
+
+            byte[] buffer = new byte[WRITE_BUFFER_SIZE];
+            while ((entry = zipStream.getNextEntry()) != null) {
+                String fileName = validateFileName(entry.getName(), destinationFolder);
+                File file = new File(fileName);
+                if (entry.isDirectory()) {
+                    file.mkdirs();
+                } else {
+                    File parent = file.getParentFile();
+                    if (!parent.exists()) {
+                        parent.mkdirs();
+                    }
+
+                    FileOutputStream fout = new FileOutputStream(file);
+                    try {
+                        int numBytesRead;
+                        while ((numBytesRead = zipStream.read(buffer)) != -1) {
+                            fout.write(buffer, 0, numBytesRead);
+                        }
+                    } finally {
+                        fout.close();
+                    }
+                }
+                long time = entry.getTime();
+                if (time > 0) {
+                    file.setLastModified(time);
+                }
+            }
+
+            // ZipInputStream stops at the central directory, consume the rest so the source is fully read
+            while (inputStream.read(buffer) != -1) {
+                // Skip trailing archive bytes
+            }
+        } finally {
+            try {
+                if (zipStream != null) zipStream.close();
+            } catch (IOException e) {
+                throw new OTAUnknownException("Error closing IO resources.", e);
+            }
+        }
+    }
+
+    public static void writeStringToFile(String content, String filePath) throws IOException {
+        // Write a sibling temp file and rename it over the target, so a crash leaves either
+        // the old or the new contents in place and never a partially written file
+        File file = new File(filePath);
+        File tempFile = new File(filePath + TEMP_FILE_SUFFIX);
+        FileOutputStream out = new FileOutputStream(tempFile);
+        try {
+            out.write(content.getBytes(UTF_8));
+            out.getFD().sync();
+        } catch (IOException e) {
+            out.close();
+            tempFile.delete();
+            throw e;
+        }
+        out.close();
+
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Unable to replace " + filePath + " with " + tempFile.getName());
+        }
+        syncDirectory(file.getParentFile());
+    }
+
+    private static void syncDirectory(File directory) {
+        if (directory == null) {
+            return;
+        }
+
+        try {
+            OTAUtils.getPlatform().syncDirectory(directory);
+        } catch (IOException e) {
+            // The rename is already visible, only its durability across power loss is weaker
+            OTAUtils.log("Unable to sync folder " + directory.getName() + ": " + e.getMessage());
+        }
+    }
+}
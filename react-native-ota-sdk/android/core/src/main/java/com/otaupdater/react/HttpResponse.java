@@ -0,0 +1,21 @@
+package com.otaupdater.react;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface HttpResponse extends Closeable {
+    int getStatusCode();
+
+    String getHeader(String name);
+
+    // -1 when the length is unknown
+    long getContentLength();
+
+    // Throws for error statuses, like HttpURLConnection.getInputStream
+    InputStream getBody() throws IOException;
+
+    // Releases the connection, a fully read body lets it be reused
+    @Override
+    void close();
+}
@@ -0,0 +1,13 @@
+package com.otaupdater.react;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Map;
+
+/**
+ * Sends the GET requests behind every download. The default is UrlConnectionTransport; apps
+ * can pass their own, for example one backed by an HTTP/2 client, to OTAPackage.
+ */
+public interface HttpTransport {
+    HttpResponse execute(URL url, Map<String, String> requestHeaders) throws IOException;
+}
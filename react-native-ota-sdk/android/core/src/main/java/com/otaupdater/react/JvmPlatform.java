@@ -0,0 +1,66 @@
+package com.otaupdater.react;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * OTAPlatform on a plain JVM, used by benchmarks and tools that run the core outside Android.
+ */
+public class JvmPlatform implements OTAPlatform {
+
+    @Override
+    public void log(String message) {
+        System.out.println("[OTAUpdater] " + message);
+    }
+
+    @Override
+    public void log(Throwable tr) {
+        System.out.println("[OTAUpdater] Exception");
+        tr.printStackTrace(System.out);
+    }
+
+    @Override
+    public long elapsedRealtime() {
+        return System.nanoTime() / 1000000;
+    }
+
+    @Override
+    public void setThreadPriority(int priority) {
+        if (priority == THREAD_PRIORITY_HIGH) {
+            Thread.currentThread().setPriority(Thread.MAX_PRIORITY);
+        } else if (priority == THREAD_PRIORITY_BACKGROUND) {
+            Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+        } else {
+            Thread.currentThread().setPriority(Thread.NORM_PRIORITY);
+        }
+    }
+
+    @Override
+    public void link(File source, File dest) throws IOException {
+        Files.createLink(dest.toPath(), source.toPath());
+    }
+
+    @Override
+    public void syncDirectory(File directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    @Override
+    public int getLinkCount(File file) throws IOException {
+        try {
+            return (Integer) Files.getAttribute(file.toPath(), "unix:nlink");
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            throw new IOException("Link counts are not available on this file system", e);
+        }
+    }
+
+    @Override
+    public boolean isSameFile(File first, File second) throws IOException {
+        return Files.isSameFile(first.toPath(), second.toPath());
+    }
+}
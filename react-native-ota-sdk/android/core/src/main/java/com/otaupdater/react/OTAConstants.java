@@ -0,0 +1,61 @@
+package com.otaupdater.react;
+
+public class OTAConstants {
+    public static final String ACCEPTED_CONTENT_ENCODINGS = "gzip, deflate";
+    public static final String ASSETS_BUNDLE_PREFIX = "assets://";
+    public static final String ASSET_STORE_FOLDER_NAME = "blobs";
+    public static final String BACKGROUND_RELOAD_KEY = "backgroundReload";
+    public static final String BACKGROUND_RELOAD_TIMEOUT_KEY = "backgroundReloadTimeout";
+    public static final String BASE_PACKAGE_HASH_KEY = "basePackageHash";
+    public static final String BUNDLE_HASH_KEY = "bundleHash";
+    public static final String CODE_PUSH_FOLDER_PREFIX = "OTAUpdates";
+    public static final String CODE_PUSH_PREFERENCES = "OTAUpdater";
+    public static final String CONTENT_ADDRESSED_STORE_KEY = "contentAddressedStore";
+    public static final String CURRENT_PACKAGE_KEY = "currentPackage";
+    public static final long DEFAULT_BACKGROUND_RELOAD_TIMEOUT_MS = 30000;
+    public static final String DEFAULT_JS_BUNDLE_NAME = "index.android.bundle";
+    public static final long DEFAULT_PROGRESS_INTERVAL_MS = 100;
+    public static final long DEFAULT_PROGRESS_MIN_BYTES = 0;
+    public static final String DIFF_URL_KEY = "diffUrl";
+    public static final int DOWNLOAD_BUFFER_SIZE = 1024 * 256;
+    public static final String DOWNLOAD_ETAG_KEY = "etag";
+    public static final String DOWNLOAD_FILE_NAME = "download.zip";
+    public static final String DOWNLOAD_LAST_MODIFIED_KEY = "lastModified";
+    public static final String DOWNLOAD_PROGRESS_EVENT_NAME = "OTADownloadProgress";
+    public static final String DOWNLOAD_RESUME_FILE_NAME = "download.json";
+    public static final String DOWNLOAD_SHA256_KEY = "sha256";
+    public static final String DOWNLOAD_URL_KEY = "downloadUrl";
+    public static final String FAILED_UPDATES_KEY = "OTA_FAILED_UPDATES";
+    public static final String HTTP_CACHE_FILE_NAME = "http-cache.json";
+    public static final int HTTP_CONNECT_TIMEOUT_MS = 15000;
+    public static final int HTTP_READ_TIMEOUT_MS = 30000;
+    public static final String MANIFEST_KEY = "manifest";
+    public static final String MAX_DOWNLOAD_RATE_KEY = "maxDownloadRate";
+    public static final String MAX_PACKAGES_KEY = "maxPackages";
+    public static final String MAX_STORAGE_BYTES_KEY = "maxStorageBytes";
+    public static final String PACKAGE_FILE_NAME = "app.json";
+    public static final String PACKAGE_HASH_KEY = "packageHash";
+    public static final String PACKAGE_INDEX_FILE_NAME = "packages.json";
+    public static final String PATCH_URL_KEY = "patchUrl";
+    public static final String PENDING_UPDATE_HASH_KEY = "hash";
+    public static final String PENDING_UPDATE_IS_LOADING_KEY = "isLoading";
+    public static final String PENDING_UPDATE_KEY = "OTA_PENDING_UPDATE";
+    public static final String PREWARM_ASSETS_KEY = "prewarmAssets";
+    public static final String PREWARM_BUNDLE_KEY = "prewarmBundle";
+    public static final String PREWARM_DURATION_KEY = "prewarmDuration";
+    public static final String PREVIOUS_PACKAGE_KEY = "previousPackage";
+    public static final String PROGRESS_INTERVAL_KEY = "progressInterval";
+    public static final String PROGRESS_MIN_BYTES_KEY = "progressMinBytes";
+    public static final String REACT_NATIVE_LOG_TAG = "ReactNative";
+    public static final String RELATIVE_BUNDLE_PATH_KEY = "bundlePath";
+    public static final String RESPONSE_BODY_KEY = "body";
+    public static final String SEGMENTED_DOWNLOAD_KEY = "segmentedDownload";
+    public static final String STAGING_FOLDER_SUFFIX = ".staging";
+    public static final String STATUS_FILE = "ota.json";
+    public static final String STREAMING_EXTRACT_KEY = "streamingExtract";
+    public static final String TRASH_FOLDER_SUFFIX = ".trash";
+    public static final String VERSION_NAME_KEY = "versionName";
+    public static final String VERSION_CODE_KEY = "versionCode";
+    public static final String CLIENT_UNIQUE_ID_KEY = "clientUniqueId";
+}
+
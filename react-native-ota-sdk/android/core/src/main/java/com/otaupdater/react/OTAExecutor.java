@@ -0,0 +1,130 @@
+package com.otaupdater.react;
+
+import org.json.JSONObject;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background threads owned by the SDK. Quick metadata lookups run on their own lane, at a
+ * higher priority, so they never queue behind anything else. Downloads can take minutes, so they
+ * get a background priority lane of their own and installs, clears and reload prewarming don't
+ * wait for them. The worker lane runs the parallel parts of a single task, such as download
+ * segments; tasks on it never wait for each other, so a full lane only delays work instead of
+ * deadlocking.
+ *
+ * Every lane's queue is bounded, and once it is full the submitting thread runs the task
+ * itself. On the worker lane that thread would otherwise just wait for the result. The other
+ * lanes get one task per call from JS, so they only fill up when JS floods the module, and
+ * slowing the caller down then beats queuing without limit.
+ */
+public class OTAExecutor {
+
+    private static final int METADATA_THREAD_COUNT = 1;
+    private static final int IO_THREAD_COUNT = 2;
+    private static final int DOWNLOAD_THREAD_COUNT = 2;
+    private static final int WORKER_THREAD_COUNT = 6;
+    private static final int WORKER_QUEUE_CAPACITY = 32;
+    private static final int LANE_QUEUE_CAPACITY = 64;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static OTAExecutor sInstance;
+
+    private final Lane mMetadataLane;
+    private final Lane mIoLane;
+    private final Lane mDownloadLane;
+    private final Lane mWorkerLane;
+
+    public static synchronized OTAExecutor getInstance() {
+        if (sInstance == null) {
+            sInstance = new OTAExecutor();
+        }
+
+        return sInstance;
+    }
+
+    private OTAExecutor() {
+        mMetadataLane = new Lane("OTA-metadata", METADATA_THREAD_COUNT, OTAPlatform.THREAD_PRIORITY_HIGH,
+                new ArrayBlockingQueue<Runnable>(LANE_QUEUE_CAPACITY));
+        mIoLane = new Lane("OTA-io", IO_THREAD_COUNT, OTAPlatform.THREAD_PRIORITY_BACKGROUND,
+                new ArrayBlockingQueue<Runnable>(LANE_QUEUE_CAPACITY));
+        mDownloadLane = new Lane("OTA-download", DOWNLOAD_THREAD_COUNT, OTAPlatform.THREAD_PRIORITY_BACKGROUND,
+                new ArrayBlockingQueue<Runnable>(LANE_QUEUE_CAPACITY));
+        mWorkerLane = new Lane("OTA-worker", WORKER_THREAD_COUNT, OTAPlatform.THREAD_PRIORITY_BACKGROUND,
+                new ArrayBlockingQueue<Runnable>(WORKER_QUEUE_CAPACITY));
+    }
+
+    public void executeMetadata(Runnable task) {
+        mMetadataLane.execute(task);
+    }
+
+    public void executeIo(Runnable task) {
+        mIoLane.execute(task);
+    }
+
+    public void executeDownload(Runnable task) {
+        mDownloadLane.execute(task);
+    }
+
+    public void executeWorker(Runnable task) {
+        mWorkerLane.execute(task);
+    }
+
+    public JSONObject getStats() {
+        JSONObject stats = new JSONObject();
+        OTAUtils.setJSONValueForKey(stats, "metadata", mMetadataLane.getStats());
+        OTAUtils.setJSONValueForKey(stats, "io", mIoLane.getStats());
+        OTAUtils.setJSONValueForKey(stats, "download", mDownloadLane.getStats());
+        OTAUtils.setJSONValueForKey(stats, "worker", mWorkerLane.getStats());
+        return stats;
+    }
+
+    private static class Lane {
+        private final ThreadPoolExecutor mExecutor;
+        private final AtomicInteger mPeakQueueDepth = new AtomicInteger();
+
+        Lane(final String name, int threadCount, final int priority, BlockingQueue<Runnable> queue) {
+            mExecutor = new ThreadPoolExecutor(threadCount, threadCount, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    queue, new ThreadFactory() {
+                private final AtomicInteger mThreadCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            OTAUtils.getPlatform().setThreadPriority(priority);
+                            runnable.run();
+                        }
+                    }, name + "-" + mThreadCount.incrementAndGet());
+                }
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
+            mExecutor.allowCoreThreadTimeOut(true);
+        }
+
+        void execute(Runnable task) {
+            mExecutor.execute(task);
+
+            int queueDepth = mExecutor.getQueue().size();
+            int peakQueueDepth;
+            while (queueDepth > (peakQueueDepth = mPeakQueueDepth.get()) &&
+                    !mPeakQueueDepth.compareAndSet(peakQueueDepth, queueDepth)) {
+                // Another caller raised the peak concurrently, compare again
+            }
+        }
+
+        JSONObject getStats() {
+            JSONObject stats = new JSONObject();
+            OTAUtils.setJSONValueForKey(stats, "queued", mExecutor.getQueue().size());
+            OTAUtils.setJSONValueForKey(stats, "peakQueued", mPeakQueueDepth.get());
+            OTAUtils.setJSONValueForKey(stats, "active", mExecutor.getActiveCount());
+            OTAUtils.setJSONValueForKey(stats, "completed", mExecutor.getCompletedTaskCount());
+            OTAUtils.setJSONValueForKey(stats, "threads", mExecutor.getPoolSize());
+            return stats;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.otaupdater.react;
 
 public class OTAInvalidUpdateException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
     public OTAInvalidUpdateException(String message) {
         super(message);
     }
@@ -1,6 +1,9 @@
 package com.otaupdater.react;
 
 public class OTAMalformedDataException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
     public OTAMalformedDataException(String message) {
         super(message);
     }
@@ -0,0 +1,46 @@
+package com.otaupdater.react;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+
+/**
+ * The most recent finished UpdateMetrics entries, oldest first. Kept in memory only and shared
+ * by every module instance, so entries survive a bundle reload.
+ */
+public class OTAMetrics {
+
+    private static final int MAX_ENTRIES = 100;
+
+    private static OTAMetrics sInstance;
+
+    private final ArrayDeque<JSONObject> mEntries = new ArrayDeque<>(MAX_ENTRIES);
+
+    public static synchronized OTAMetrics getInstance() {
+        if (sInstance == null) {
+            sInstance = new OTAMetrics();
+        }
+
+        return sInstance;
+    }
+
+    private OTAMetrics() {
+    }
+
+    public synchronized void record(JSONObject entry) {
+        if (mEntries.size() == MAX_ENTRIES) {
+            mEntries.removeFirst();
+        }
+        mEntries.addLast(entry);
+    }
+
+    public synchronized JSONArray getEntries() {
+        JSONArray entries = new JSONArray();
+        for (JSONObject entry : mEntries) {
+            entries.put(entry);
+        }
+
+        return entries;
+    }
+}
@@ -0,0 +1,33 @@
+package com.otaupdater.react;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The few operations the core needs from the operating system. The Android module installs
+ * AndroidPlatform through OTAUtils.setPlatform, plain JVM builds fall back to JvmPlatform.
+ */
+public interface OTAPlatform {
+
+    // Thread priorities, mapped onto the platform's own scale
+    int THREAD_PRIORITY_BACKGROUND = 0;
+    int THREAD_PRIORITY_DEFAULT = 1;
+    int THREAD_PRIORITY_HIGH = 2;
+
+    void log(String message);
+
+    void log(Throwable tr);
+
+    // Milliseconds since some fixed point, for measuring durations only
+    long elapsedRealtime();
+
+    void setThreadPriority(int priority);
+
+    void link(File source, File dest) throws IOException;
+
+    void syncDirectory(File directory) throws IOException;
+
+    int getLinkCount(File file) throws IOException;
+
+    boolean isSameFile(File first, File second) throws IOException;
+}
@@ -1,6 +1,9 @@
 package com.otaupdater.react;
 
 public class OTAUnknownException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
     public OTAUnknownException(String message) {
         super(message);
     }
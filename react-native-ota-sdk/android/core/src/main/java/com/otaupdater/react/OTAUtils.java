@@ -0,0 +1,121 @@
+package com.otaupdater.react;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+
+public class OTAUtils {
+
+    private static volatile OTAPlatform sPlatform;
+
+    public static OTAPlatform getPlatform() {
+        OTAPlatform platform = sPlatform;
+        if (platform == null) {
+            synchronized (OTAUtils.class) {
+                if (sPlatform == null) {
+                    sPlatform = new JvmPlatform();
+                }
+                platform = sPlatform;
+            }
+        }
+
+        return platform;
+    }
+
+    public static void setPlatform(OTAPlatform platform) {
+        sPlatform = platform;
+    }
+
+    public static long elapsedRealtime() {
+        return getPlatform().elapsedRealtime();
+    }
+
+    public static String appendPathComponent(String basePath, String appendPathComponent) {
+        return new File(basePath, appendPathComponent).getAbsolutePath();
+    }
+
+    public static String bytesToHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+
+        return sb.toString();
+    }
+
+    public static MessageDigest createSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new OTAUnknownException("SHA-256 is not available.", e);
+        }
+    }
+
+    // Deep copy, nested objects and arrays are copied too so the copy shares nothing mutable
+    public static JSONObject copyJsonObject(JSONObject json) {
+        JSONObject copy = new JSONObject();
+        Iterator<String> keys = json.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            setJSONValueForKey(copy, key, copyJsonValue(json.opt(key)));
+        }
+
+        return copy;
+    }
+
+    private static JSONArray copyJsonArray(JSONArray json) {
+        JSONArray copy = new JSONArray();
+        for (int i = 0; i < json.length(); i++) {
+            copy.put(copyJsonValue(json.opt(i)));
+        }
+
+        return copy;
+    }
+
+    private static Object copyJsonValue(Object value) {
+        if (value instanceof JSONObject) {
+            return copyJsonObject((JSONObject) value);
+        } else if (value instanceof JSONArray) {
+            return copyJsonArray((JSONArray) value);
+        }
+
+        return value;
+    }
+
+    public static JSONObject getJsonObjectFromFile(String filePath) throws IOException {
+        String content = FileUtils.readFileToString(filePath);
+        try {
+            return new JSONObject(content);
+        } catch (JSONException jsonException) {
+            throw new OTAMalformedDataException(filePath, jsonException);
+        }
+    }
+
+    public static void log(String message) {
+        getPlatform().log(message);
+    }
+
+    public static void log(Throwable tr) {
+        getPlatform().log(tr);
+    }
+
+    public static void setJSONValueForKey(JSONObject json, String key, Object value) {
+        try {
+            json.put(key, value);
+        } catch (JSONException e) {
+            throw new OTAUnknownException("Unable to set value " + value + " for key " + key + " to JSONObject");
+        }
+    }
+
+    public static void writeJsonToFile(JSONObject json, String filePath) throws IOException {
+        String jsonString = json.toString();
+        FileUtils.writeStringToFile(jsonString, filePath);
+    }
+}
+
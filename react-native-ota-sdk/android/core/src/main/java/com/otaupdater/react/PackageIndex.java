@@ -0,0 +1,197 @@
+package com.otaupdater.react;
+
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * On-disk size and last use time of every package folder, persisted in packages.json so the
+ * retention policy can pick eviction candidates without walking the package folders. With the
+ * asset store, files linked from the store are charged to the store once rather than to every
+ * package that links them.
+ */
+public class PackageIndex {
+
+    private static final String SIZE_KEY = "size";
+    private static final String LAST_USED_KEY = "lastUsed";
+
+    // One index per OTA folder, so every BundleManager instance mutates and saves the same entries
+    private static final Map<String, PackageIndex> sInstances = new HashMap<>();
+
+    private String mOTAPath;
+    private JSONObject mEntries;
+    private boolean mAssetStoreEnabled = false;
+
+    public static synchronized PackageIndex getInstance(String otaPath) {
+        String key = new File(otaPath).getAbsolutePath();
+        PackageIndex instance = sInstances.get(key);
+        if (instance == null) {
+            instance = new PackageIndex(otaPath);
+            sInstances.put(key, instance);
+        }
+
+        return instance;
+    }
+
+    private PackageIndex(String otaPath) {
+        mOTAPath = otaPath;
+    }
+
+    public synchronized void setAssetStoreEnabled(boolean assetStoreEnabled) {
+        mAssetStoreEnabled = assetStoreEnabled;
+    }
+
+    private long getPackageSize(File packageFolder) {
+        // Stored files keep a link in the store for as long as any package uses them
+        return mAssetStoreEnabled ?
+                FileUtils.getUnsharedDirectorySize(packageFolder) : FileUtils.getDirectorySize(packageFolder);
+    }
+
+    private String getIndexFilePath() {
+        return OTAUtils.appendPathComponent(mOTAPath, OTAConstants.PACKAGE_INDEX_FILE_NAME);
+    }
+
+    private JSONObject getEntries() {
+        if (mEntries == null) {
+            try {
+                mEntries = FileUtils.fileAtPathExists(getIndexFilePath()) ?
+                        OTAUtils.getJsonObjectFromFile(getIndexFilePath()) : new JSONObject();
+            } catch (IOException | OTAMalformedDataException e) {
+                OTAUtils.log("Unable to read package index, rebuilding it: " + e.getMessage());
+                mEntries = new JSONObject();
+            }
+        }
+
+        return mEntries;
+    }
+
+    private void save() {
+        try {
+            OTAUtils.writeJsonToFile(getEntries(), getIndexFilePath());
+        } catch (IOException e) {
+            // The index is rebuilt from the package folders, losing it only costs a rescan
+            OTAUtils.log("Unable to save package index: " + e.getMessage());
+        }
+    }
+
+    public synchronized void recordPackage(String packageHash, long lastUsed) {
+        File packageFolder = new File(mOTAPath, packageHash);
+        if (!packageFolder.isDirectory()) {
+            return;
+        }
+
+        JSONObject entry = new JSONObject();
+        OTAUtils.setJSONValueForKey(entry, SIZE_KEY, getPackageSize(packageFolder));
+        OTAUtils.setJSONValueForKey(entry, LAST_USED_KEY, lastUsed);
+        OTAUtils.setJSONValueForKey(getEntries(), packageHash, entry);
+        save();
+    }
+
+    public synchronized void touch(String packageHash) {
+        JSONObject entry = getEntries().optJSONObject(packageHash);
+        if (entry == null) {
+            recordPackage(packageHash, System.currentTimeMillis());
+            return;
+        }
+
+        OTAUtils.setJSONValueForKey(entry, LAST_USED_KEY, System.currentTimeMillis());
+        save();
+    }
+
+    // Returns the recorded size of the removed package
+    public synchronized long remove(String packageHash) {
+        Object entry = getEntries().remove(packageHash);
+        if (entry == null) {
+            return 0;
+        }
+
+        save();
+        return ((JSONObject) entry).optLong(SIZE_KEY);
+    }
+
+    // Indexes package folders the index doesn't know yet and drops entries whose folder is gone
+    public synchronized void reconcile(List<String> packageHashes) {
+        JSONObject entries = getEntries();
+        boolean isChanged = false;
+        List<String> indexedHashes = new ArrayList<>();
+        Iterator<String> keys = entries.keys();
+        while (keys.hasNext()) {
+            indexedHashes.add(keys.next());
+        }
+
+        for (String indexedHash : indexedHashes) {
+            if (!packageHashes.contains(indexedHash)) {
+                entries.remove(indexedHash);
+                isChanged = true;
+            }
+        }
+
+        for (String packageHash : packageHashes) {
+            if (!entries.has(packageHash)) {
+                JSONObject entry = new JSONObject();
+                File packageFolder = new File(mOTAPath, packageHash);
+                OTAUtils.setJSONValueForKey(entry, SIZE_KEY, getPackageSize(packageFolder));
+                OTAUtils.setJSONValueForKey(entry, LAST_USED_KEY, packageFolder.lastModified());
+                OTAUtils.setJSONValueForKey(entries, packageHash, entry);
+                isChanged = true;
+            }
+        }
+
+        if (isChanged) {
+            save();
+        }
+    }
+
+    public synchronized long getTotalBytes() {
+        long totalBytes = 0;
+        JSONObject entries = getEntries();
+        Iterator<String> keys = entries.keys();
+        while (keys.hasNext()) {
+            JSONObject entry = entries.optJSONObject(keys.next());
+            if (entry != null) {
+                totalBytes += entry.optLong(SIZE_KEY);
+            }
+        }
+
+        return totalBytes;
+    }
+
+    // The least recently used package outside protectedHashes while the index is over either limit, or null.
+    // storeBytes is the size of the asset store, which counts towards maxBytes.
+    public synchronized String findEvictionCandidate(Set<String> protectedHashes, int maxPackages, long maxBytes,
+                                                     long storeBytes) {
+        JSONObject entries = getEntries();
+        boolean isOverCount = maxPackages > 0 && entries.length() > maxPackages;
+        boolean isOverSize = maxBytes > 0 && getTotalBytes() + storeBytes > maxBytes;
+        if (!isOverCount && !isOverSize) {
+            return null;
+        }
+
+        String candidate = null;
+        long candidateLastUsed = Long.MAX_VALUE;
+        Iterator<String> keys = entries.keys();
+        while (keys.hasNext()) {
+            String packageHash = keys.next();
+            JSONObject entry = entries.optJSONObject(packageHash);
+            long lastUsed = entry != null ? entry.optLong(LAST_USED_KEY) : 0;
+            if (!protectedHashes.contains(packageHash) && lastUsed < candidateLastUsed) {
+                candidate = packageHash;
+                candidateLastUsed = lastUsed;
+            }
+        }
+
+        return candidate;
+    }
+
+    // Forgets the in-memory copy, for when the OTA folder was deleted underneath the index
+    public synchronized void reset() {
+        mEntries = null;
+    }
+}
@@ -0,0 +1,13 @@
+package com.otaupdater.react;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Turns a package's app.json into whatever the caller needs, straight from the file. Runs while
+ * BundleManager holds its metadata lock, so the package can't be installed over or evicted
+ * halfway through the read.
+ */
+public interface PackageMetadataReader<T> {
+    T read(InputStream metadataStream) throws IOException;
+}
@@ -0,0 +1,145 @@
+package com.otaupdater.react;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class ProgressInputStream extends FilterInputStream {
+    private long mTotalBytes;
+    private long mReceivedBytes;
+    private long mDecodedBytes = -1;
+    private DownloadProgressCallback mProgressCallback;
+    private DownloadProgress mProgress;
+    private BandwidthLimiter mBandwidthLimiter;
+    private final long mInitialReceivedBytes;
+    private final long mStartTime = OTAUtils.elapsedRealtime();
+    private long mFirstByteTime = -1;
+
+    public ProgressInputStream(InputStream in, long totalBytes, long receivedBytes,
+                               DownloadProgressCallback progressCallback) {
+        this(in, totalBytes, receivedBytes, progressCallback, null);
+    }
+
+    public ProgressInputStream(InputStream in, long totalBytes, long receivedBytes,
+                               DownloadProgressCallback progressCallback, BandwidthLimiter bandwidthLimiter) {
+        super(in);
+        mTotalBytes = totalBytes;
+        mReceivedBytes = receivedBytes;
+        mInitialReceivedBytes = receivedBytes;
+        mProgressCallback = progressCallback;
+        mBandwidthLimiter = bandwidthLimiter;
+        mProgress = new DownloadProgress(totalBytes, receivedBytes);
+    }
+
+    public long getReceivedBytes() {
+        return mReceivedBytes;
+    }
+
+    // Average wire throughput of this stream, resumed bytes excluded
+    public long getBytesPerSecond() {
+        long elapsedMs = OTAUtils.elapsedRealtime() - mStartTime;
+        return elapsedMs > 0 ? (mReceivedBytes - mInitialReceivedBytes) * 1000 / elapsedMs : 0;
+    }
+
+    // elapsedRealtime of the first body byte, or -1 before any arrived
+    public long getFirstByteTime() {
+        return mFirstByteTime;
+    }
+
+    public long getDecodedBytes() {
+        return mDecodedBytes >= 0 ? mDecodedBytes : mReceivedBytes;
+    }
+
+    // Counts what a decoder reading from this stream produces, so progress reports both sizes
+    public InputStream countDecodedBytes(InputStream decodedStream) {
+        mDecodedBytes = 0;
+        return new FilterInputStream(decodedStream) {
+            @Override
+            public int read() throws IOException {
+                int value = super.read();
+                if (value >= 0) {
+                    mDecodedBytes++;
+                }
+                return value;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int numBytesRead = super.read(buffer, offset, length);
+                if (numBytesRead > 0) {
+                    mDecodedBytes += numBytesRead;
+                } else if (numBytesRead < 0) {
+                    // Wire reads run ahead of the decoder, report the final decoded size once
+                    reportProgress();
+                }
+                return numBytesRead;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long numBytesSkipped = super.skip(n);
+                if (numBytesSkipped > 0) {
+                    mDecodedBytes += numBytesSkipped;
+                }
+                return numBytesSkipped;
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = super.read();
+        if (value >= 0) {
+            onBytesRead(1);
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int numBytesRead = super.read(buffer, offset, length);
+        if (numBytesRead > 0) {
+            onBytesRead(numBytesRead);
+        }
+        return numBytesRead;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long numBytesSkipped = super.skip(n);
+        if (numBytesSkipped > 0) {
+            onBytesRead(numBytesSkipped);
+        }
+        return numBytesSkipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void onBytesRead(long numBytesRead) throws IOException {
+        if (mFirstByteTime < 0) {
+            mFirstByteTime = OTAUtils.elapsedRealtime();
+        }
+        mReceivedBytes += numBytesRead;
+        reportProgress();
+        if (mBandwidthLimiter != null) {
+            mBandwidthLimiter.acquire(numBytesRead);
+        }
+    }
+
+    private void reportProgress() {
+        if (mProgressCallback != null) {
+            // One instance is updated and reported on every read so the read loop allocates nothing
+            mProgress.update(mTotalBytes, mReceivedBytes, getDecodedBytes());
+            mProgress.setBytesPerSecond(getBytesPerSecond());
+            mProgressCallback.call(mProgress);
+        }
+    }
+}
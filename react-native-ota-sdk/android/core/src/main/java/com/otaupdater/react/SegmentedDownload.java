@@ -0,0 +1,299 @@
+package com.otaupdater.react;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads a file over several parallel range requests, each written in place into a
+ * preallocated file. It starts with two connections, takes the first sample interval as the
+ * baseline, and then adds one connection per interval while the total throughput keeps rising.
+ */
+public class SegmentedDownload {
+
+    private static final long MIN_SEGMENTED_SIZE = 1024 * 1024 * 4;
+    private static final long MIN_CHUNK_SIZE = 1024 * 1024;
+    private static final int CHUNKS_PER_CONNECTION = 4;
+    private static final int INITIAL_CONNECTIONS = 2;
+    private static final int MAX_CONNECTIONS = 6;
+    private static final long SAMPLE_INTERVAL_MS = 500;
+    private static final double MIN_THROUGHPUT_GAIN = 1.15;
+
+    private final HttpTransport mHttpTransport;
+    private final URL mUrl;
+    private final long mTotalBytes;
+    private final String mValidator;
+    private final String mETag;
+    private final String mLastModified;
+    private final long mChunkSize;
+
+    private final AtomicLong mNextOffset = new AtomicLong();
+    private final AtomicLong mReceivedBytes = new AtomicLong();
+    // Worker counts are guarded by mWorkerLock
+    private final Object mWorkerLock = new Object();
+    private int mWorkerCount = 0;
+    private int mRunningWorkerCount = 0;
+    private volatile Exception mError;
+
+    private DownloadProgressCallback mProgressCallback;
+    private DownloadProgress mProgress;
+    private BandwidthLimiter mBandwidthLimiter;
+    private long mStartTime;
+
+    private SegmentedDownload(HttpTransport httpTransport, URL url, long totalBytes, String validator,
+                              String etag, String lastModified) {
+        mHttpTransport = httpTransport;
+        mUrl = url;
+        mTotalBytes = totalBytes;
+        mValidator = validator;
+        mETag = etag;
+        mLastModified = lastModified;
+        mChunkSize = Math.max(MIN_CHUNK_SIZE, totalBytes / (MAX_CONNECTIONS * CHUNKS_PER_CONNECTION));
+    }
+
+    // Returns null when the server can't serve consistent byte ranges or the file is too small to split
+    public static SegmentedDownload probe(HttpTransport httpTransport, URL url) throws IOException {
+        HttpResponse response = httpTransport.execute(url, createRangeHeaders(0, 0, null));
+        try {
+            if (response.getStatusCode() != HttpURLConnection.HTTP_PARTIAL) {
+                return null;
+            }
+
+            // Every segment must come from the same artifact, which needs a strong validator
+            String etag = response.getHeader("ETag");
+            String lastModified = response.getHeader("Last-Modified");
+            String validator = etag != null && !etag.startsWith("W/") ? etag : lastModified;
+            long totalBytes = getContentRangeTotal(response);
+            if (validator == null || totalBytes < MIN_SEGMENTED_SIZE) {
+                return null;
+            }
+
+            return new SegmentedDownload(httpTransport, url, totalBytes, validator, etag, lastModified);
+        } finally {
+            response.close();
+        }
+    }
+
+    public long getTotalBytes() {
+        return mTotalBytes;
+    }
+
+    public String getETag() {
+        return mETag;
+    }
+
+    public String getLastModified() {
+        return mLastModified;
+    }
+
+    public void downloadTo(File file, DownloadProgressCallback progressCallback, BandwidthLimiter bandwidthLimiter)
+            throws IOException {
+        mProgressCallback = progressCallback;
+        mProgress = new DownloadProgress(mTotalBytes, 0);
+        mBandwidthLimiter = bandwidthLimiter;
+        mStartTime = OTAUtils.elapsedRealtime();
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(mTotalBytes);
+            FileChannel channel = randomAccessFile.getChannel();
+
+            for (int i = 0; i < INITIAL_CONNECTIONS; i++) {
+                startWorker(channel);
+            }
+
+            long sampleTime = OTAUtils.elapsedRealtime();
+            long sampleBytes = 0;
+            double lastThroughput = -1;
+            boolean isGrowing = true;
+            while (waitForWorkers(SAMPLE_INTERVAL_MS)) {
+                long now = OTAUtils.elapsedRealtime();
+                long receivedBytes = mReceivedBytes.get();
+                if (isGrowing && now > sampleTime) {
+                    double throughput = (receivedBytes - sampleBytes) / (double) (now - sampleTime);
+                    // The first sample only sets the baseline
+                    if (lastThroughput >= 0) {
+                        if (throughput > lastThroughput * MIN_THROUGHPUT_GAIN && getWorkerCount() < MAX_CONNECTIONS &&
+                            mNextOffset.get() < mTotalBytes) {
+                            startWorker(channel);
+                        } else {
+                            isGrowing = false;
+                        }
+                    }
+                    lastThroughput = throughput;
+                }
+                sampleTime = now;
+                sampleBytes = receivedBytes;
+            }
+
+            // Workers still write into the file until they stop, so it can't be closed before that
+            synchronized (mWorkerLock) {
+                while (mRunningWorkerCount > 0) {
+                    try {
+                        mWorkerLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        mError = e;
+                        throw new OTAUnknownException("Interrupted while waiting for download segments.", e);
+                    }
+                }
+            }
+
+            if (mError instanceof IOException) {
+                throw (IOException) mError;
+            } else if (mError instanceof RuntimeException) {
+                throw (RuntimeException) mError;
+            } else if (mError != null) {
+                throw new OTAUnknownException("Segmented download failed.", mError);
+            } else if (mReceivedBytes.get() != mTotalBytes) {
+                throw new OTAUnknownException("Received " + mReceivedBytes.get() + " bytes, expected " + mTotalBytes);
+            }
+
+            OTAUtils.log("Downloaded " + mTotalBytes + " bytes over " + getWorkerCount() + " connections at " +
+                    getBytesPerSecond() + " bytes/s");
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private void startWorker(final FileChannel channel) {
+        synchronized (mWorkerLock) {
+            mWorkerCount++;
+            mRunningWorkerCount++;
+        }
+
+        // Shares the SDK's worker lane, so a busy lane queues segments instead of adding threads
+        OTAExecutor.getInstance().executeWorker(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ByteBuffer buffer = ByteBuffer.allocate(OTAConstants.DOWNLOAD_BUFFER_SIZE);
+                    long start;
+                    while (mError == null && (start = mNextOffset.getAndAdd(mChunkSize)) < mTotalBytes) {
+                        long end = Math.min(start + mChunkSize, mTotalBytes) - 1;
+                        downloadRange(channel, start, end, buffer);
+                    }
+                } catch (Exception e) {
+                    if (mError == null) {
+                        mError = e;
+                    }
+                } finally {
+                    synchronized (mWorkerLock) {
+                        mRunningWorkerCount--;
+                        mWorkerLock.notifyAll();
+                    }
+                }
+            }
+        });
+    }
+
+    // Connections started so far, including finished ones
+    int getWorkerCount() {
+        synchronized (mWorkerLock) {
+            return mWorkerCount;
+        }
+    }
+
+    // Returns false once every worker has finished
+    private boolean waitForWorkers(long timeoutMs) {
+        synchronized (mWorkerLock) {
+            if (mRunningWorkerCount == 0) {
+                return false;
+            }
+
+            try {
+                mWorkerLock.wait(timeoutMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                mError = e;
+                return false;
+            }
+            return mRunningWorkerCount > 0;
+        }
+    }
+
+    private void downloadRange(FileChannel channel, long start, long end, ByteBuffer buffer) throws IOException {
+        HttpResponse response = mHttpTransport.execute(mUrl, createRangeHeaders(start, end, mValidator));
+        try {
+            if (response.getStatusCode() != HttpURLConnection.HTTP_PARTIAL ||
+                BundleManager.getContentRangeStart(response) != start) {
+                throw new OTAUnknownException("Server did not return bytes " + start + "-" + end +
+                        ", the download changed while it was being fetched.");
+            }
+
+            InputStream inputStream = response.getBody();
+            long position = start;
+            while (position <= end && mError == null) {
+                int length = (int) Math.min(buffer.capacity(), end + 1 - position);
+                int numBytesRead = inputStream.read(buffer.array(), 0, length);
+                if (numBytesRead < 0) {
+                    throw new EOFException("Connection closed at byte " + position + " of range " + start + "-" + end);
+                }
+
+                buffer.clear();
+                buffer.limit(numBytesRead);
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                onBytesReceived(numBytesRead);
+            }
+        } finally {
+            response.close();
+        }
+    }
+
+    private void onBytesReceived(int numBytesReceived) throws IOException {
+        long receivedBytes = mReceivedBytes.addAndGet(numBytesReceived);
+        if (mProgressCallback != null) {
+            synchronized (mProgress) {
+                mProgress.update(mTotalBytes, Math.max(receivedBytes, mProgress.getReceivedBytes()));
+                mProgress.setBytesPerSecond(getBytesPerSecond());
+                mProgressCallback.call(mProgress);
+            }
+        }
+        if (mBandwidthLimiter != null) {
+            // The limiter is shared, so all segments together stay under the configured rate
+            mBandwidthLimiter.acquire(numBytesReceived);
+        }
+    }
+
+    private long getBytesPerSecond() {
+        long elapsedMs = OTAUtils.elapsedRealtime() - mStartTime;
+        return elapsedMs > 0 ? mReceivedBytes.get() * 1000 / elapsedMs : 0;
+    }
+
+    private static Map<String, String> createRangeHeaders(long start, long end, String validator) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept-Encoding", "identity");
+        headers.put("Range", "bytes=" + start + "-" + end);
+        if (validator != null) {
+            headers.put("If-Range", validator);
+        }
+
+        return headers;
+    }
+
+    private static long getContentRangeTotal(HttpResponse response) {
+        // Content-Range: bytes <start>-<end>/<total>
+        String contentRange = response.getHeader("Content-Range");
+        int slashIndex = contentRange != null ? contentRange.lastIndexOf('/') : -1;
+        if (slashIndex < 0) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(contentRange.substring(slashIndex + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
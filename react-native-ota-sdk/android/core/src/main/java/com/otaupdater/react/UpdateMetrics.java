@@ -0,0 +1,79 @@
+package com.otaupdater.react;
+
+import org.json.JSONObject;
+
+/**
+ * Timings and counters of one download, install or load. Phase durations are in milliseconds
+ * and add up when a phase runs more than once, for example a connect that is retried.
+ */
+public class UpdateMetrics {
+
+    public static final String TYPE_DOWNLOAD = "download";
+    public static final String TYPE_INSTALL = "install";
+    public static final String TYPE_LOAD = "load";
+
+    private final String mType;
+    private final String mPackageHash;
+    private final long mStartedAt = System.currentTimeMillis();
+    private final long mStartTime = now();
+    private final JSONObject mPhases = new JSONObject();
+    private final JSONObject mStats = new JSONObject();
+    private boolean mIsFinished = false;
+
+    public UpdateMetrics(String type, String packageHash) {
+        mType = type;
+        mPackageHash = packageHash;
+    }
+
+    public static long now() {
+        return OTAUtils.elapsedRealtime();
+    }
+
+    public synchronized void addPhase(String phase, long startTime) {
+        addPhaseDuration(phase, now() - startTime);
+    }
+
+    public synchronized void addPhaseDuration(String phase, long durationMs) {
+        OTAUtils.setJSONValueForKey(mPhases, phase, mPhases.optLong(phase) + durationMs);
+    }
+
+    public synchronized void put(String key, Object value) {
+        OTAUtils.setJSONValueForKey(mStats, key, value);
+    }
+
+    public synchronized void increment(String key) {
+        OTAUtils.setJSONValueForKey(mStats, key, mStats.optLong(key) + 1);
+    }
+
+    public void finish() {
+        record(null);
+    }
+
+    public void fail(String message) {
+        record(message != null ? message : "Unknown error");
+    }
+
+    // Adds the finished operation to the metrics ring, later calls are ignored
+    private void record(String error) {
+        JSONObject entry = new JSONObject();
+        synchronized (this) {
+            if (mIsFinished) {
+                return;
+            }
+            mIsFinished = true;
+
+            OTAUtils.setJSONValueForKey(entry, "type", mType);
+            OTAUtils.setJSONValueForKey(entry, "packageHash", mPackageHash);
+            OTAUtils.setJSONValueForKey(entry, "startedAt", mStartedAt);
+            OTAUtils.setJSONValueForKey(entry, "duration", now() - mStartTime);
+            OTAUtils.setJSONValueForKey(entry, "success", error == null);
+            if (error != null) {
+                OTAUtils.setJSONValueForKey(entry, "error", error);
+            }
+            OTAUtils.setJSONValueForKey(entry, "phases", OTAUtils.copyJsonObject(mPhases));
+            OTAUtils.setJSONValueForKey(entry, "stats", OTAUtils.copyJsonObject(mStats));
+        }
+
+        OTAMetrics.getInstance().record(entry);
+    }
+}
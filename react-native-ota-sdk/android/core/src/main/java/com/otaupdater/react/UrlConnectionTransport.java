@@ -0,0 +1,134 @@
+package com.otaupdater.react;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+
+/**
+ * HttpURLConnection based transport. Responses are released by closing their body instead of
+ * disconnecting, which returns the socket to the platform keep-alive pool so the next request
+ * to the same host skips the TCP and TLS handshakes. Whatever is left of a body is drained
+ * first, up to a limit, since only a fully read connection can be pooled.
+ */
+public class UrlConnectionTransport implements HttpTransport {
+
+    // A larger remainder costs more to read than a new handshake
+    private static final long MAX_DRAIN_BYTES = 1024 * 64;
+
+    private final int mConnectTimeoutMs;
+    private final int mReadTimeoutMs;
+
+    public UrlConnectionTransport() {
+        this(OTAConstants.HTTP_CONNECT_TIMEOUT_MS, OTAConstants.HTTP_READ_TIMEOUT_MS);
+    }
+
+    public UrlConnectionTransport(int connectTimeoutMs, int readTimeoutMs) {
+        mConnectTimeoutMs = connectTimeoutMs;
+        mReadTimeoutMs = readTimeoutMs;
+    }
+
+    @Override
+    public HttpResponse execute(URL url, Map<String, String> requestHeaders) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        // A stalled server fails the request instead of holding a download thread forever
+        connection.setConnectTimeout(mConnectTimeoutMs);
+        connection.setReadTimeout(mReadTimeoutMs);
+        for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+
+        try {
+            return new Response(connection, connection.getResponseCode());
+        } catch (IOException | RuntimeException e) {
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    private static class Response implements HttpResponse {
+        private final HttpURLConnection mConnection;
+        private final int mStatusCode;
+        private InputStream mBody;
+        private boolean mIsBodyClosed;
+
+        Response(HttpURLConnection connection, int statusCode) {
+            mConnection = connection;
+            mStatusCode = statusCode;
+        }
+
+        @Override
+        public int getStatusCode() {
+            return mStatusCode;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return mConnection.getHeaderField(name);
+        }
+
+        @Override
+        public long getContentLength() {
+            String contentLength = mConnection.getHeaderField("Content-Length");
+            if (contentLength == null) {
+                return -1;
+            }
+
+            try {
+                return Long.parseLong(contentLength.trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (mStatusCode >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                throw new IOException("Server returned HTTP " + mStatusCode + " for " + mConnection.getURL());
+            }
+
+            if (mBody == null) {
+                mBody = new FilterInputStream(mConnection.getInputStream()) {
+                    @Override
+                    public void close() throws IOException {
+                        mIsBodyClosed = true;
+                        super.close();
+                    }
+                };
+            }
+            return mBody;
+        }
+
+        @Override
+        public void close() {
+            if (mIsBodyClosed) {
+                // The caller already released the connection
+                return;
+            }
+
+            try {
+                InputStream body = mBody != null ? mBody :
+                        mStatusCode >= HttpURLConnection.HTTP_BAD_REQUEST ? mConnection.getErrorStream() : mConnection.getInputStream();
+                if (body == null) {
+                    return;
+                }
+
+                long drainedBytes = 0;
+                byte[] buffer = new byte[1024 * 8];
+                int numBytesRead;
+                while (drainedBytes <= MAX_DRAIN_BYTES && (numBytesRead = body.read(buffer)) >= 0) {
+                    drainedBytes += numBytesRead;
+                }
+                body.close();
+                if (drainedBytes > MAX_DRAIN_BYTES) {
+                    mConnection.disconnect();
+                }
+            } catch (IOException e) {
+                // Nothing to hand back to the pool, drop the connection
+                mConnection.disconnect();
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.otaupdater.react;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AssetStoreTest {
+
+    private static final byte[] SHARED_ASSET = "shared asset".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private File mStoreFolder;
+    private AssetStore mAssetStore;
+
+    @Before
+    public void setUp() {
+        mStoreFolder = new File(mTemporaryFolder.getRoot(), OTAConstants.ASSET_STORE_FOLDER_NAME);
+        mAssetStore = new AssetStore(mStoreFolder.getAbsolutePath());
+    }
+
+    @Test
+    public void identicalFilesShareOneBlob() throws IOException {
+        File first = createPackage("first");
+        File second = createPackage("second");
+
+        mAssetStore.ingestDirectory(first.getAbsolutePath());
+        mAssetStore.ingestDirectory(second.getAbsolutePath());
+
+        File blob = getBlob(SHARED_ASSET);
+        assertTrue(Files.isSameFile(blob.toPath(), new File(first, "assets/shared.png").toPath()));
+        assertTrue(Files.isSameFile(blob.toPath(), new File(second, "assets/shared.png").toPath()));
+        assertEquals(3, OTAUtils.getPlatform().getLinkCount(blob));
+        // Package metadata differs per package and is never stored
+        assertFalse(getBlob(Files.readAllBytes(new File(first, OTAConstants.PACKAGE_FILE_NAME).toPath())).exists());
+    }
+
+    @Test
+    public void collectionKeepsBlobsThatAreStillReferenced() throws IOException {
+        File first = createPackage("first");
+        File second = createPackage("second");
+        mAssetStore.ingestDirectory(first.getAbsolutePath());
+        mAssetStore.ingestDirectory(second.getAbsolutePath());
+        File blob = getBlob(SHARED_ASSET);
+
+        // Only the first package's own bundle goes, the shared asset is still linked from the second
+        FileUtils.deleteDirectoryAtPath(first.getAbsolutePath());
+        assertEquals("first bundle".length(), mAssetStore.collectGarbage());
+        assertFalse(getBlob("first bundle".getBytes(StandardCharsets.UTF_8)).exists());
+        assertTrue(blob.exists());
+        assertTrue(getBlob("second bundle".getBytes(StandardCharsets.UTF_8)).exists());
+
+        FileUtils.deleteDirectoryAtPath(second.getAbsolutePath());
+        long freedBytes = mAssetStore.collectGarbage();
+        assertFalse(blob.exists());
+        assertEquals(SHARED_ASSET.length + "second bundle".length(), freedBytes);
+    }
+
+    private File createPackage(String packageHash) throws IOException {
+        File packageFolder = new File(mTemporaryFolder.getRoot(), packageHash);
+        File assetsFolder = new File(packageFolder, "assets");
+        assetsFolder.mkdirs();
+        Files.write(new File(assetsFolder, "shared.png").toPath(), SHARED_ASSET);
+        Files.write(new File(packageFolder, OTAConstants.DEFAULT_JS_BUNDLE_NAME).toPath(),
+                (packageHash + " bundle").getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(packageFolder, OTAConstants.PACKAGE_FILE_NAME).toPath(),
+                ("{\"packageHash\":\"" + packageHash + "\"}").getBytes(StandardCharsets.UTF_8));
+        return packageFolder;
+    }
+
+    private File getBlob(byte[] content) {
+        return new File(mStoreFolder, OTAUtils.bytesToHex(OTAUtils.createSha256Digest().digest(content)));
+    }
+}
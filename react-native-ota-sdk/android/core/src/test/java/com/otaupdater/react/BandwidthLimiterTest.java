@@ -0,0 +1,105 @@
+package com.otaupdater.react;
+
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BandwidthLimiterTest {
+
+    private static final long NANOS_PER_MS = 1000000;
+
+    private final FakeClockLimiter mLimiter = new FakeClockLimiter();
+
+    @Test
+    public void unlimitedNeverWaits() throws InterruptedIOException {
+        mLimiter.acquire(1024 * 1024);
+        mLimiter.acquire(1024 * 1024);
+
+        assertEquals(0, mLimiter.mWaitedMs);
+    }
+
+    @Test
+    public void debtIsRepaidAtTheConfiguredRate() throws InterruptedIOException {
+        mLimiter.setBytesPerSecond(1000);
+
+        mLimiter.acquire(500);
+
+        assertEquals(500, mLimiter.mWaitedMs);
+    }
+
+    @Test
+    public void sustainedReadsMatchTheRate() throws InterruptedIOException {
+        mLimiter.setBytesPerSecond(10000);
+
+        for (int i = 0; i < 100; i++) {
+            mLimiter.acquire(1000);
+        }
+
+        // Waits round up to whole milliseconds, the surplus carries over as tokens
+        assertTrue(mLimiter.mWaitedMs >= 10000);
+        assertTrue(mLimiter.mWaitedMs <= 10000 + 100);
+    }
+
+    @Test
+    public void idleTimeIsCappedAtOneBurst() throws InterruptedIOException {
+        mLimiter.setBytesPerSecond(1000);
+        mLimiter.mNowNanos += 60 * 1000 * NANOS_PER_MS;
+
+        // The rate is low enough that the minimum burst applies
+        mLimiter.acquire(1024 * 16);
+        assertEquals(0, mLimiter.mWaitedMs);
+
+        mLimiter.acquire(1000);
+        assertEquals(1000, mLimiter.mWaitedMs);
+    }
+
+    @Test
+    public void liftingTheLimitReleasesWaitingReaders() throws InterruptedIOException {
+        mLimiter.setBytesPerSecond(1000);
+        mLimiter.mLiftLimitOnWait = true;
+
+        mLimiter.acquire(1000 * 1000);
+
+        assertEquals(1, mLimiter.mWaitCount);
+        assertEquals(0, mLimiter.getBytesPerSecond());
+    }
+
+    @Test
+    public void lateRateChangesApplyToTheRemainingDebt() throws InterruptedIOException {
+        mLimiter.setBytesPerSecond(1000);
+        mLimiter.acquire(1000);
+        long waitedAtLowRate = mLimiter.mWaitedMs;
+
+        mLimiter.setBytesPerSecond(100000);
+        mLimiter.acquire(1000 * 10);
+
+        assertEquals(1000, waitedAtLowRate);
+        assertEquals(1000 + 100, mLimiter.mWaitedMs);
+    }
+
+    private static class FakeClockLimiter extends BandwidthLimiter {
+
+        long mNowNanos = 0;
+        long mWaitedMs = 0;
+        int mWaitCount = 0;
+        boolean mLiftLimitOnWait = false;
+
+        @Override
+        long nanoTime() {
+            return mNowNanos;
+        }
+
+        @Override
+        void waitFor(long waitMs) {
+            mWaitCount++;
+            mWaitedMs += waitMs;
+            mNowNanos += waitMs * NANOS_PER_MS;
+            if (mLiftLimitOnWait) {
+                setBytesPerSecond(0);
+            }
+        }
+    }
+}
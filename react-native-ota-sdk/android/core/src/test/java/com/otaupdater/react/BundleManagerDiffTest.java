@@ -0,0 +1,139 @@
+package com.otaupdater.react;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BundleManagerDiffTest {
+
+    private static final String BASE_HASH = "base";
+    private static final String UPDATE_HASH = "update";
+    private static final String ASSET_PATH = "assets/logo.png";
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private TestHttpServer mServer;
+    private BundleManager mBundleManager;
+    private OTAPlatform mPlatform;
+
+    @Before
+    public void setUp() throws IOException {
+        mPlatform = OTAUtils.getPlatform();
+        mServer = new TestHttpServer();
+        mBundleManager = new BundleManager(mTemporaryFolder.getRoot().getAbsolutePath());
+
+        Map<String, String> baseFiles = new LinkedHashMap<>();
+        baseFiles.put(OTAConstants.DEFAULT_JS_BUNDLE_NAME, "__d(function(){return 1;});\n");
+        baseFiles.put(ASSET_PATH, "logo");
+        mServer.setBody(createZip(baseFiles));
+        JSONObject basePackage = createUpdatePackage(BASE_HASH, baseFiles);
+        mBundleManager.downloadPackage(basePackage, OTAConstants.DEFAULT_JS_BUNDLE_NAME, null);
+        mBundleManager.installPackage(basePackage, false);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        OTAUtils.setPlatform(mPlatform);
+        mServer.close();
+    }
+
+    @Test
+    public void unchangedFilesAreLinkedFromTheInstalledPackage() throws IOException {
+        downloadDiff();
+
+        File baseAsset = new File(mBundleManager.getPackageFolderPath(BASE_HASH), ASSET_PATH);
+        File updateAsset = new File(mBundleManager.getPackageFolderPath(UPDATE_HASH), ASSET_PATH);
+        assertTrue(Files.isSameFile(baseAsset.toPath(), updateAsset.toPath()));
+        assertUpdateInstalled();
+    }
+
+    @Test
+    public void unchangedFilesAreCopiedWhenLinkingFails() throws IOException {
+        OTAUtils.setPlatform(new JvmPlatform() {
+            @Override
+            public void link(File source, File dest) throws IOException {
+                throw new IOException("Hard links are not supported");
+            }
+        });
+
+        downloadDiff();
+
+        File baseAsset = new File(mBundleManager.getPackageFolderPath(BASE_HASH), ASSET_PATH);
+        File updateAsset = new File(mBundleManager.getPackageFolderPath(UPDATE_HASH), ASSET_PATH);
+        assertFalse(Files.isSameFile(baseAsset.toPath(), updateAsset.toPath()));
+        assertUpdateInstalled();
+    }
+
+    private void downloadDiff() throws IOException {
+        Map<String, String> changedFiles = new LinkedHashMap<>();
+        changedFiles.put(OTAConstants.DEFAULT_JS_BUNDLE_NAME, "__d(function(){return 2;});\n");
+        Map<String, String> updateFiles = new LinkedHashMap<>(changedFiles);
+        updateFiles.put(ASSET_PATH, "logo");
+        mServer.setBody(createZip(changedFiles));
+        mServer.setETag("\"v2\"");
+
+        JSONObject updatePackage = createUpdatePackage(UPDATE_HASH, updateFiles);
+        OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.DIFF_URL_KEY, mServer.getUrl("/diff"));
+        mBundleManager.downloadPackage(updatePackage, OTAConstants.DEFAULT_JS_BUNDLE_NAME, null);
+    }
+
+    private void assertUpdateInstalled() throws IOException {
+        File updateFolder = new File(mBundleManager.getPackageFolderPath(UPDATE_HASH));
+        assertEquals("__d(function(){return 2;});\n", readString(new File(updateFolder, OTAConstants.DEFAULT_JS_BUNDLE_NAME)));
+        assertEquals("logo", readString(new File(updateFolder, ASSET_PATH)));
+        assertFalse(new File(mTemporaryFolder.getRoot(), OTAConstants.CODE_PUSH_FOLDER_PREFIX + "/" +
+                UPDATE_HASH + OTAConstants.STAGING_FOLDER_SUFFIX).exists());
+
+        // Only the changed files came over the network
+        assertEquals("/diff", mServer.getRequests().get(mServer.getRequests().size() - 1).path);
+        assertEquals(2, mServer.getRequests().size());
+    }
+
+    private JSONObject createUpdatePackage(String packageHash, Map<String, String> files) {
+        JSONObject manifest = new JSONObject();
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            byte[] content = file.getValue().getBytes(StandardCharsets.UTF_8);
+            OTAUtils.setJSONValueForKey(manifest, file.getKey(), OTAUtils.bytesToHex(OTAUtils.createSha256Digest().digest(content)));
+        }
+
+        JSONObject updatePackage = new JSONObject();
+        OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.PACKAGE_HASH_KEY, packageHash);
+        OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.DOWNLOAD_URL_KEY, mServer.getUrl("/" + packageHash));
+        OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.MANIFEST_KEY, manifest);
+        return updatePackage;
+    }
+
+    private static byte[] createZip(Map<String, String> files) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        ZipOutputStream zipStream = new ZipOutputStream(buffer);
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            zipStream.putNextEntry(new ZipEntry(file.getKey()));
+            zipStream.write(file.getValue().getBytes(StandardCharsets.UTF_8));
+            zipStream.closeEntry();
+        }
+        zipStream.close();
+        return buffer.toByteArray();
+    }
+
+    private static String readString(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
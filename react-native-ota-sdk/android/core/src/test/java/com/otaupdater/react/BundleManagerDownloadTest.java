@@ -0,0 +1,260 @@
+package com.otaupdater.react;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BundleManagerDownloadTest {
+
+    private static final String PACKAGE_HASH = "package-1";
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private TestHttpServer mServer;
+    private BundleManager mBundleManager;
+    private byte[] mBody;
+
+    @Before
+    public void setUp() throws IOException {
+        StringBuilder bundle = new StringBuilder();
+        for (int i = 0; i < 4096; i++) {
+            bundle.append("__d(function(){return ").append(i).append(";});\n");
+        }
+        mBody = bundle.toString().getBytes(StandardCharsets.UTF_8);
+
+        mServer = new TestHttpServer();
+        mServer.setBody(mBody);
+        mBundleManager = new BundleManager(mTemporaryFolder.getRoot().getAbsolutePath());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.close();
+    }
+
+    @Test
+    public void interruptedDownloadResumesWithRangeAndIfRange() throws IOException {
+        mServer.cutNextBodyAfter(mBody.length / 3);
+        downloadExpectingFailure();
+
+        download();
+
+        List<TestHttpServer.Request> requests = mServer.getRequests();
+        assertEquals(2, requests.size());
+        assertEquals("bytes=" + (mBody.length / 3) + "-", requests.get(1).getHeader("Range"));
+        assertEquals("\"v1\"", requests.get(1).getHeader("If-Range"));
+        assertEquals("identity", requests.get(1).getHeader("Accept-Encoding"));
+        assertInstalledBundle();
+    }
+
+    @Test
+    public void misalignedPartialResponseRestartsWithoutRange() throws IOException {
+        mServer.cutNextBodyAfter(mBody.length / 3);
+        downloadExpectingFailure();
+
+        mServer.setRangeMisaligned(true);
+        download();
+
+        List<TestHttpServer.Request> requests = mServer.getRequests();
+        assertEquals(3, requests.size());
+        assertNotNull(requests.get(1).getHeader("Range"));
+        assertNull(requests.get(2).getHeader("Range"));
+        assertNull(requests.get(2).getHeader("If-Range"));
+        assertInstalledBundle();
+    }
+
+    @Test
+    public void changedValidatorDownloadsTheFullBody() throws IOException {
+        mServer.cutNextBodyAfter(mBody.length / 3);
+        downloadExpectingFailure();
+
+        mServer.setETag("\"v2\"");
+        download();
+
+        List<TestHttpServer.Request> requests = mServer.getRequests();
+        assertEquals(2, requests.size());
+        assertEquals("\"v1\"", requests.get(1).getHeader("If-Range"));
+        assertInstalledBundle();
+    }
+
+    @Test
+    public void notModifiedKeepsTheInstalledPackage() throws IOException {
+        download();
+        download();
+
+        List<TestHttpServer.Request> requests = mServer.getRequests();
+        assertEquals(2, requests.size());
+        assertEquals("\"v1\"", requests.get(1).getHeader("If-None-Match"));
+        assertInstalledBundle();
+    }
+
+    @Test
+    public void gzipEncodedBodyIsDecoded() throws IOException {
+        mServer.setGzipEnabled(true);
+        download();
+
+        assertEquals(1, mServer.getRequests().size());
+        assertInstalledBundle();
+    }
+
+    @Test
+    public void segmentedDownloadFetchesSeveralRanges() throws IOException {
+        StringBuilder bundle = new StringBuilder();
+        for (int i = 0; i < 300000; i++) {
+            bundle.append("__d(function(){return ").append(i).append(";});\n");
+        }
+        mBody = bundle.toString().getBytes(StandardCharsets.UTF_8);
+        mServer.setBody(mBody);
+        mBundleManager.setSegmentedDownloadEnabled(true);
+
+        download();
+
+        List<TestHttpServer.Request> requests = mServer.getRequests();
+        assertEquals("bytes=0-0", requests.get(0).getHeader("Range"));
+        assertTrue(requests.size() > 2);
+        assertInstalledBundle();
+
+        // The probe's validators were saved, so the next download is conditional
+        download();
+        requests = mServer.getRequests();
+        assertEquals("\"v1\"", requests.get(requests.size() - 1).getHeader("If-None-Match"));
+    }
+
+    @Test
+    public void cachedResponseSurvivesANewManagerAndPackageDownloads() throws IOException {
+        mBundleManager.saveCachedResponse("https://example.com/check", "\"c1\"", null, "{\"update\":false}");
+        download();
+
+        BundleManager restartedManager = new BundleManager(mTemporaryFolder.getRoot().getAbsolutePath());
+        JSONObject cachedResponse = restartedManager.getCachedResponse("https://example.com/check");
+        assertNotNull(cachedResponse);
+        assertEquals("\"c1\"", cachedResponse.optString(OTAConstants.DOWNLOAD_ETAG_KEY));
+        assertEquals("{\"update\":false}", cachedResponse.optString(OTAConstants.RESPONSE_BODY_KEY));
+        assertNull(restartedManager.getCachedResponse(mServer.getUrl("/bundle")));
+
+        restartedManager.saveCachedResponse("https://example.com/check?v=2", "\"c2\"", null, "{}");
+        assertNull(restartedManager.getCachedResponse("https://example.com/check"));
+    }
+
+    @Test
+    public void packageCopiesShareNoNestedObjects() throws IOException {
+        JSONObject manifest = new JSONObject();
+        OTAUtils.setJSONValueForKey(manifest, OTAConstants.DEFAULT_JS_BUNDLE_NAME, "hash");
+        JSONObject updatePackage = new JSONObject();
+        OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.PACKAGE_HASH_KEY, PACKAGE_HASH);
+        OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.DOWNLOAD_URL_KEY, mServer.getUrl("/bundle"));
+        OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.MANIFEST_KEY, manifest);
+        mBundleManager.downloadPackage(updatePackage, OTAConstants.DEFAULT_JS_BUNDLE_NAME, null);
+
+        mBundleManager.getPackage(PACKAGE_HASH).optJSONObject(OTAConstants.MANIFEST_KEY).remove(OTAConstants.DEFAULT_JS_BUNDLE_NAME);
+
+        JSONObject cachedManifest = mBundleManager.getPackage(PACKAGE_HASH).optJSONObject(OTAConstants.MANIFEST_KEY);
+        assertEquals("hash", cachedManifest.optString(OTAConstants.DEFAULT_JS_BUNDLE_NAME));
+    }
+
+    @Test
+    public void streamedHashMismatchRemovesStagingAndKeepsTheCurrentPackage() throws IOException {
+        download();
+        mBundleManager.installPackage(mBundleManager.getPackage(PACKAGE_HASH), false);
+        byte[] installedBody = mBody;
+
+        mBody = createZip(OTAConstants.DEFAULT_JS_BUNDLE_NAME, "__d(function(){return 2;});\n");
+        mServer.setBody(mBody);
+        mServer.setETag("\"v2\"");
+        mBundleManager.setStreamingExtractEnabled(true);
+        JSONObject updatePackage = new JSONObject();
+        OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.PACKAGE_HASH_KEY, "package-2");
+        OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.DOWNLOAD_URL_KEY, mServer.getUrl("/update"));
+        OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.DOWNLOAD_SHA256_KEY, "0000");
+        try {
+            mBundleManager.downloadPackage(updatePackage, OTAConstants.DEFAULT_JS_BUNDLE_NAME, null);
+            fail("Expected the hash mismatch to be rejected");
+        } catch (OTAInvalidUpdateException e) {
+            // Detected once the archive was extracted into staging
+        }
+
+        File otaFolder = new File(mTemporaryFolder.getRoot(), OTAConstants.CODE_PUSH_FOLDER_PREFIX);
+        assertFalse(new File(otaFolder, "package-2" + OTAConstants.STAGING_FOLDER_SUFFIX).exists());
+        assertFalse(new File(otaFolder, "package-2").exists());
+        assertNull(mBundleManager.getPackage("package-2"));
+        assertEquals(PACKAGE_HASH, mBundleManager.getCurrentPackageHash());
+        assertArrayEquals(installedBody, Files.readAllBytes(new File(mBundleManager.getCurrentBundlePath()).toPath()));
+    }
+
+    @Test
+    public void segmentedHashMismatchDiscardsTheDownload() throws IOException {
+        StringBuilder bundle = new StringBuilder();
+        for (int i = 0; i < 300000; i++) {
+            bundle.append("__d(function(){return ").append(i).append(";});\n");
+        }
+        mServer.setBody(bundle.toString().getBytes(StandardCharsets.UTF_8));
+        mBundleManager.setSegmentedDownloadEnabled(true);
+        JSONObject updatePackage = new JSONObject();
+        OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.PACKAGE_HASH_KEY, PACKAGE_HASH);
+        OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.DOWNLOAD_URL_KEY, mServer.getUrl("/bundle"));
+        OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.DOWNLOAD_SHA256_KEY, "0000");
+        try {
+            mBundleManager.downloadPackage(updatePackage, OTAConstants.DEFAULT_JS_BUNDLE_NAME, null);
+            fail("Expected the hash mismatch to be rejected");
+        } catch (OTAInvalidUpdateException e) {
+            // Verified after every segment landed
+        }
+
+        File otaFolder = new File(mTemporaryFolder.getRoot(), OTAConstants.CODE_PUSH_FOLDER_PREFIX);
+        assertFalse(new File(otaFolder, OTAConstants.DOWNLOAD_FILE_NAME).exists());
+        assertNull(mBundleManager.getPackage(PACKAGE_HASH));
+    }
+
+    private static byte[] createZip(String entryName, String content) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        ZipOutputStream zipStream = new ZipOutputStream(buffer);
+        zipStream.putNextEntry(new ZipEntry(entryName));
+        zipStream.write(content.getBytes(StandardCharsets.UTF_8));
+        zipStream.closeEntry();
+        zipStream.close();
+        return buffer.toByteArray();
+    }
+
+    private void download() throws IOException {
+        JSONObject updatePackage = new JSONObject();
+        OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.PACKAGE_HASH_KEY, PACKAGE_HASH);
+        OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.DOWNLOAD_URL_KEY, mServer.getUrl("/bundle"));
+        mBundleManager.downloadPackage(updatePackage, OTAConstants.DEFAULT_JS_BUNDLE_NAME, null);
+    }
+
+    private void downloadExpectingFailure() {
+        try {
+            download();
+            fail("Expected the truncated download to fail");
+        } catch (IOException | RuntimeException e) {
+            // The partial file stays behind for the next attempt
+        }
+    }
+
+    private void assertInstalledBundle() throws IOException {
+        assertNotNull(mBundleManager.getPackage(PACKAGE_HASH));
+        File bundleFile = new File(mBundleManager.getPackageFolderPath(PACKAGE_HASH), OTAConstants.DEFAULT_JS_BUNDLE_NAME);
+        assertArrayEquals(mBody, Files.readAllBytes(bundleFile.toPath()));
+    }
+}
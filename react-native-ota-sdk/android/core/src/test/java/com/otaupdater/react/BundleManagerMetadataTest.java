@@ -0,0 +1,70 @@
+package com.otaupdater.react;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BundleManagerMetadataTest {
+
+    private static final String PACKAGE_HASH = "package-1";
+
+    private static final PackageMetadataReader<JSONObject> JSON_READER = new PackageMetadataReader<JSONObject>() {
+        @Override
+        public JSONObject read(InputStream metadataStream) throws IOException {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int numBytesRead;
+            while ((numBytesRead = metadataStream.read(buffer)) != -1) {
+                content.write(buffer, 0, numBytesRead);
+            }
+            return new JSONObject(new String(content.toByteArray(), StandardCharsets.UTF_8));
+        }
+    };
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private TestHttpServer mServer;
+    private BundleManager mBundleManager;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new TestHttpServer();
+        mServer.setBody("__d(function(){return 1;});\n".getBytes(StandardCharsets.UTF_8));
+        mBundleManager = new BundleManager(mTemporaryFolder.getRoot().getAbsolutePath());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.close();
+    }
+
+    @Test
+    public void packageMetadataIsReadStraightFromTheFile() throws IOException {
+        assertNull(mBundleManager.readCurrentPackageMetadata(JSON_READER));
+
+        JSONObject updatePackage = new JSONObject();
+        OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.PACKAGE_HASH_KEY, PACKAGE_HASH);
+        OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.DOWNLOAD_URL_KEY, mServer.getUrl("/bundle"));
+        mBundleManager.downloadPackage(updatePackage, OTAConstants.DEFAULT_JS_BUNDLE_NAME, null);
+
+        JSONObject downloadedPackage = mBundleManager.readPackageMetadata(PACKAGE_HASH, JSON_READER);
+        assertEquals(PACKAGE_HASH, downloadedPackage.optString(OTAConstants.PACKAGE_HASH_KEY));
+        assertNull(mBundleManager.readPackageMetadata("missing", JSON_READER));
+
+        mBundleManager.installPackage(mBundleManager.getPackage(PACKAGE_HASH), false);
+        JSONObject currentPackage = mBundleManager.readCurrentPackageMetadata(JSON_READER);
+        assertEquals(mServer.getUrl("/bundle"), currentPackage.optString(OTAConstants.DOWNLOAD_URL_KEY));
+    }
+}
@@ -0,0 +1,165 @@
+package com.otaupdater.react;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BundleManagerRetentionTest {
+
+    private static final int LARGE_BUNDLE_SIZE = 64 * 1024;
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private TestHttpServer mServer;
+    private BundleManager mBundleManager;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new TestHttpServer();
+        mServer.setBody("__d(function(){return 1;});\n".getBytes(StandardCharsets.UTF_8));
+        mBundleManager = new BundleManager(mTemporaryFolder.getRoot().getAbsolutePath());
+        mBundleManager.setMaxPackages(2);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.close();
+        mBundleManager.clearUpdates();
+    }
+
+    @Test
+    public void downloadedPackageSurvivesCollectionUntilInstalled() throws IOException {
+        JSONObject first = download("first");
+        mBundleManager.installPackage(first, false);
+        JSONObject second = download("second");
+        mBundleManager.installPackage(second, false);
+
+        // Current and previous already fill the limit, the new package is the only unprotected one
+        download("third");
+        mBundleManager.collectGarbage();
+
+        assertNotNull(mBundleManager.getPackage("first"));
+        assertNotNull(mBundleManager.getPackage("second"));
+        assertNotNull(mBundleManager.getPackage("third"));
+    }
+
+    @Test
+    public void nextDownloadReleasesThePreviousOne() throws IOException {
+        JSONObject first = download("first");
+        mBundleManager.installPackage(first, false);
+        JSONObject second = download("second");
+        mBundleManager.installPackage(second, false);
+
+        download("third");
+        download("fourth");
+        mBundleManager.collectGarbage();
+
+        assertNull(mBundleManager.getPackage("third"));
+        assertNotNull(mBundleManager.getPackage("fourth"));
+        assertEquals("second", mBundleManager.getCurrentPackageHash());
+        assertEquals("first", mBundleManager.getPreviousPackageHash());
+    }
+
+    @Test
+    public void collectionFollowsAnInstallByAnotherInstance() throws IOException {
+        BundleManager staleBundleManager = mBundleManager;
+        JSONObject first = download("first");
+        staleBundleManager.installPackage(first, false);
+        JSONObject second = download("second");
+        staleBundleManager.installPackage(second, false);
+
+        // A reload leaves the old instance with the status it cached before the new module installed
+        mBundleManager = new BundleManager(mTemporaryFolder.getRoot().getAbsolutePath());
+        JSONObject third = download("third");
+        mBundleManager.installPackage(third, false);
+        download("fourth");
+
+        staleBundleManager.collectGarbage();
+
+        assertNotNull(mBundleManager.getPackage("second"));
+        assertNotNull(mBundleManager.getPackage("third"));
+        assertNotNull(mBundleManager.getPackage("fourth"));
+        assertEquals("third", staleBundleManager.getCurrentPackageHash());
+    }
+
+    @Test
+    public void instancesRecordIntoOneIndex() throws IOException {
+        BundleManager firstBundleManager = mBundleManager;
+        download("first");
+        mBundleManager = new BundleManager(mTemporaryFolder.getRoot().getAbsolutePath());
+        download("second");
+        mBundleManager = firstBundleManager;
+        download("third");
+
+        File otaFolder = new File(mTemporaryFolder.getRoot(), OTAConstants.CODE_PUSH_FOLDER_PREFIX);
+        JSONObject index = OTAUtils.getJsonObjectFromFile(
+                new File(otaFolder, OTAConstants.PACKAGE_INDEX_FILE_NAME).getAbsolutePath());
+        assertEquals(3, index.length());
+        assertTrue(index.has("second"));
+    }
+
+    @Test
+    public void storedFilesCountOnceAgainstTheByteLimit() throws IOException {
+        useLargeStoredBundles(2 * LARGE_BUNDLE_SIZE);
+        downloadCurrentAndPreviousAndTwoMore();
+
+        // Four copies of the bundle would be over the limit, but they are one stored file
+        mBundleManager.collectGarbage();
+
+        assertNotNull(mBundleManager.getPackage("third"));
+        assertNotNull(mBundleManager.getPackage("fourth"));
+    }
+
+    @Test
+    public void storedFilesCountTowardsTheByteLimit() throws IOException {
+        useLargeStoredBundles(LARGE_BUNDLE_SIZE / 2);
+        downloadCurrentAndPreviousAndTwoMore();
+
+        mBundleManager.collectGarbage();
+
+        assertNull(mBundleManager.getPackage("third"));
+        assertNotNull(mBundleManager.getPackage("first"));
+        assertNotNull(mBundleManager.getPackage("second"));
+        assertNotNull(mBundleManager.getPackage("fourth"));
+    }
+
+    private void useLargeStoredBundles(long maxStorageBytes) {
+        byte[] body = new byte[LARGE_BUNDLE_SIZE];
+        Arrays.fill(body, (byte) ';');
+        mServer.setBody(body);
+        mBundleManager.setMaxPackages(0);
+        mBundleManager.setMaxStorageBytes(maxStorageBytes);
+        mBundleManager.setContentAddressedStoreEnabled(true);
+    }
+
+    private void downloadCurrentAndPreviousAndTwoMore() throws IOException {
+        JSONObject first = download("first");
+        mBundleManager.installPackage(first, false);
+        JSONObject second = download("second");
+        mBundleManager.installPackage(second, false);
+        download("third");
+        download("fourth");
+    }
+
+    private JSONObject download(String packageHash) throws IOException {
+        JSONObject updatePackage = new JSONObject();
+        OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.PACKAGE_HASH_KEY, packageHash);
+        OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.DOWNLOAD_URL_KEY, mServer.getUrl("/" + packageHash));
+        mBundleManager.downloadPackage(updatePackage, OTAConstants.DEFAULT_JS_BUNDLE_NAME, null);
+        return updatePackage;
+    }
+}
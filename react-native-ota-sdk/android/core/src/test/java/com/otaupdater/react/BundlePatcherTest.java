@@ -0,0 +1,122 @@
+package com.otaupdater.react;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class BundlePatcherTest {
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void patchWithSeeksOutsideTheOldFileIsApplied() throws IOException {
+        byte[] oldBytes = new byte[1000];
+        for (int i = 0; i < oldBytes.length; i++) {
+            oldBytes[i] = (byte) (i * 7);
+        }
+
+        PatchWriter patch = new PatchWriter(oldBytes);
+        patch.addRecord(100, 5, -103);
+        // Starts 3 bytes before the old file, only those 3 bytes read as zero
+        patch.addRecord(20, 0, oldBytes.length - 21);
+        // Runs 6 bytes past the end of the old file
+        patch.addRecord(10, 3, -5000);
+        // Entirely before the old file
+        patch.addRecord(8, 2, 0);
+        File newFile = mTemporaryFolder.newFile();
+
+        BundlePatcher.applyPatch(createOldFile(oldBytes), new ByteArrayInputStream(patch.toByteArray()),
+                newFile, OTAUtils.bytesToHex(OTAUtils.createSha256Digest().digest(patch.getExpectedBytes())));
+
+        assertArrayEquals(patch.getExpectedBytes(), Files.readAllBytes(newFile.toPath()));
+    }
+
+    @Test
+    public void hashMismatchIsRejected() throws IOException {
+        byte[] oldBytes = "__d(function(){return 1;});\n".getBytes(StandardCharsets.UTF_8);
+        PatchWriter patch = new PatchWriter(oldBytes);
+        patch.addRecord(oldBytes.length, 4, 0);
+
+        try {
+            BundlePatcher.applyPatch(createOldFile(oldBytes), new ByteArrayInputStream(patch.toByteArray()),
+                    mTemporaryFolder.newFile(), "0000");
+            fail("Expected the patched bundle hash to be rejected");
+        } catch (OTAInvalidUpdateException e) {
+            assertFalse(e.getMessage().isEmpty());
+        }
+    }
+
+    private File createOldFile(byte[] oldBytes) throws IOException {
+        File oldFile = mTemporaryFolder.newFile();
+        Files.write(oldFile.toPath(), oldBytes);
+        return oldFile;
+    }
+
+    // Builds an OTADIFF1 patch and, next to it, the output bsdiff semantics give for it
+    private static class PatchWriter {
+        private final byte[] mOldBytes;
+        private final ByteArrayOutputStream mRecords = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream mExpected = new ByteArrayOutputStream();
+        private long mOldPosition = 0;
+
+        PatchWriter(byte[] oldBytes) {
+            mOldBytes = oldBytes;
+        }
+
+        void addRecord(int diffLength, int extraLength, long seekAdjustment) {
+            writeOffset(mRecords, diffLength);
+            writeOffset(mRecords, extraLength);
+            writeOffset(mRecords, seekAdjustment);
+            for (int i = 0; i < diffLength; i++) {
+                byte diff = (byte) (i % 5 + 1);
+                mRecords.write(diff);
+                byte oldByte = mOldPosition >= 0 && mOldPosition < mOldBytes.length ? mOldBytes[(int) mOldPosition] : 0;
+                mExpected.write((byte) (diff + oldByte));
+                mOldPosition++;
+            }
+            for (int i = 0; i < extraLength; i++) {
+                mRecords.write('x');
+                mExpected.write('x');
+            }
+            mOldPosition += seekAdjustment;
+        }
+
+        byte[] getExpectedBytes() {
+            return mExpected.toByteArray();
+        }
+
+        byte[] toByteArray() throws IOException {
+            ByteArrayOutputStream patch = new ByteArrayOutputStream();
+            patch.write("OTADIFF1".getBytes(StandardCharsets.US_ASCII));
+            writeOffset(patch, mExpected.size());
+            DeflaterOutputStream records = new DeflaterOutputStream(patch);
+            records.write(mRecords.toByteArray());
+            records.close();
+            return patch.toByteArray();
+        }
+
+        private static void writeOffset(ByteArrayOutputStream out, long value) {
+            long magnitude = Math.abs(value);
+            for (int i = 0; i < 8; i++) {
+                int b = (int) (magnitude >>> (8 * i)) & 0xFF;
+                if (i == 7 && value < 0) {
+                    b |= 0x80;
+                }
+                out.write(b);
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.otaupdater.react;
+
+import org.json.JSONArray;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+
+public class BundlePrewarmerTest {
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void bundleAndListedAssetsAreRead() throws IOException {
+        File bundleFile = write("index.android.bundle", "__d(function(){return 1;});\n");
+        File image = write("assets/logo.png", "png");
+        File font = write("assets/fonts/body.ttf", "font data");
+
+        JSONArray assetPaths = new JSONArray();
+        assetPaths.put("assets/logo.png");
+        assetPaths.put("assets/fonts/body.ttf");
+        // Missing and empty entries are skipped rather than failing the reload
+        assetPaths.put("assets/missing.png");
+        assetPaths.put("");
+
+        long bytesRead = BundlePrewarmer.prewarm(bundleFile.getAbsolutePath(), assetPaths);
+
+        assertEquals(bundleFile.length() + image.length() + font.length(), bytesRead);
+    }
+
+    @Test
+    public void fileUrlsAreAccepted() throws IOException {
+        File bundleFile = write("index.android.bundle", "__d(function(){return 1;});\n");
+
+        assertEquals(bundleFile.length(), BundlePrewarmer.prewarm("file://" + bundleFile.getAbsolutePath(), null));
+    }
+
+    @Test
+    public void bundlesShippedInTheApkAreSkipped() {
+        assertEquals(0, BundlePrewarmer.prewarm(OTAConstants.ASSETS_BUNDLE_PREFIX + "index.android.bundle", null));
+        assertEquals(0, BundlePrewarmer.prewarm("ASSETS://index.android.bundle", null));
+    }
+
+    @Test
+    public void missingBundleReadsNothing() {
+        File bundleFile = new File(mTemporaryFolder.getRoot(), "index.android.bundle");
+
+        assertEquals(0, BundlePrewarmer.prewarm(bundleFile.getAbsolutePath(), null));
+    }
+
+    private File write(String path, String content) throws IOException {
+        File file = new File(mTemporaryFolder.getRoot(), path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
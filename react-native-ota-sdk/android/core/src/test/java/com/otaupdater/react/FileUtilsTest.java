@@ -0,0 +1,52 @@
+package com.otaupdater.react;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class FileUtilsTest {
+
+    private static final int ENTRY_COUNT = 64;
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void parallelUnzipExtractsEveryEntry() throws IOException {
+        File zipFile = createZip();
+        File destination = new File(mTemporaryFolder.getRoot(), "out");
+
+        FileUtils.unzipFile(zipFile, destination.getAbsolutePath(), 4);
+
+        for (int i = 0; i < ENTRY_COUNT; i++) {
+            File file = new File(destination, "assets/asset_" + i + ".txt");
+            assertEquals("asset " + i, new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        }
+    }
+
+    private File createZip() throws IOException {
+        File zipFile = mTemporaryFolder.newFile();
+        ZipOutputStream zipStream = new ZipOutputStream(new FileOutputStream(zipFile));
+        try {
+            for (int i = 0; i < ENTRY_COUNT; i++) {
+                zipStream.putNextEntry(new ZipEntry("assets/asset_" + i + ".txt"));
+                zipStream.write(("asset " + i).getBytes(StandardCharsets.UTF_8));
+                zipStream.closeEntry();
+            }
+        } finally {
+            zipStream.close();
+        }
+
+        return zipFile;
+    }
+}
@@ -0,0 +1,59 @@
+package com.otaupdater.react;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class SegmentedDownloadTest {
+
+    private static final int BODY_SIZE = 6 * 1024 * 1024;
+    private static final long BYTES_PER_SECOND = 4 * 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private TestHttpServer mServer;
+    private byte[] mBody;
+
+    @Before
+    public void setUp() throws IOException {
+        mBody = new byte[BODY_SIZE];
+        for (int i = 0; i < mBody.length; i++) {
+            mBody[i] = (byte) i;
+        }
+        mServer = new TestHttpServer();
+        mServer.setBody(mBody);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.close();
+    }
+
+    @Test
+    public void flatThroughputKeepsTheInitialConnections() throws IOException {
+        SegmentedDownload download = SegmentedDownload.probe(new UrlConnectionTransport(),
+                new URL(mServer.getUrl("/bundle")));
+        assertNotNull(download);
+
+        // The shared limit caps the total rate, so more connections can't raise the throughput
+        BandwidthLimiter bandwidthLimiter = new BandwidthLimiter();
+        bandwidthLimiter.setBytesPerSecond(BYTES_PER_SECOND);
+        File file = mTemporaryFolder.newFile();
+        download.downloadTo(file, null, bandwidthLimiter);
+
+        assertEquals(2, download.getWorkerCount());
+        assertArrayEquals(mBody, Files.readAllBytes(file.toPath()));
+    }
+}
@@ -0,0 +1,253 @@
+package com.otaupdater.react;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Minimal HTTP/1.1 server on a loopback socket. It serves one body with an ETag, honors
+ * If-None-Match, Range and If-Range, keeps connections alive, and can be told to misbehave:
+ * cut the next body short, answer ranges from the wrong offset, or gzip the body.
+ */
+class TestHttpServer implements Closeable {
+
+    static class Request {
+        final String method;
+        final String path;
+        final Map<String, String> headers;
+
+        Request(String method, String path, Map<String, String> headers) {
+            this.method = method;
+            this.path = path;
+            this.headers = headers;
+        }
+
+        String getHeader(String name) {
+            return headers.get(name.toLowerCase());
+        }
+    }
+
+    private final ServerSocket mServerSocket;
+    private final List<Request> mRequests = Collections.synchronizedList(new ArrayList<Request>());
+    private final AtomicInteger mConnectionCount = new AtomicInteger();
+
+    private volatile byte[] mBody = new byte[0];
+    private volatile String mETag = "\"v1\"";
+    private volatile int mCutAfterBytes = -1;
+    private volatile boolean mIsRangeMisaligned = false;
+    private volatile boolean mIsGzipEnabled = false;
+
+    TestHttpServer() throws IOException {
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        }, "TestHttpServer-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    String getUrl(String path) {
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort() + path;
+    }
+
+    void setBody(byte[] body) {
+        mBody = body;
+    }
+
+    void setETag(String etag) {
+        mETag = etag;
+    }
+
+    // The next body stops after this many bytes and the connection is dropped
+    void cutNextBodyAfter(int numBytes) {
+        mCutAfterBytes = numBytes;
+    }
+
+    // Range requests are answered with a 206 that starts at offset 0 instead of the requested one
+    void setRangeMisaligned(boolean isRangeMisaligned) {
+        mIsRangeMisaligned = isRangeMisaligned;
+    }
+
+    void setGzipEnabled(boolean isGzipEnabled) {
+        mIsGzipEnabled = isGzipEnabled;
+    }
+
+    int getConnectionCount() {
+        return mConnectionCount.get();
+    }
+
+    List<Request> getRequests() {
+        synchronized (mRequests) {
+            return new ArrayList<>(mRequests);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        mServerSocket.close();
+    }
+
+    private void acceptConnections() {
+        while (!mServerSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = mServerSocket.accept();
+            } catch (IOException e) {
+                return;
+            }
+
+            mConnectionCount.incrementAndGet();
+            Thread connectionThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        serveConnection(socket);
+                    } catch (IOException e) {
+                        // The client went away
+                    } finally {
+                        try {
+                            socket.close();
+                        } catch (IOException e) {
+                            // Already closed
+                        }
+                    }
+                }
+            }, "TestHttpServer-connection");
+            connectionThread.setDaemon(true);
+            connectionThread.start();
+        }
+    }
+
+    private void serveConnection(Socket socket) throws IOException {
+        InputStream in = new BufferedInputStream(socket.getInputStream());
+        OutputStream out = socket.getOutputStream();
+        while (true) {
+            String requestLine = readLine(in);
+            if (requestLine == null || requestLine.isEmpty()) {
+                return;
+            }
+
+            String[] parts = requestLine.split(" ");
+            Map<String, String> headers = new HashMap<>();
+            String line;
+            while ((line = readLine(in)) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+            }
+            Request request = new Request(parts[0], parts[1], headers);
+            mRequests.add(request);
+
+            if (!respond(request, out)) {
+                return;
+            }
+        }
+    }
+
+    // Returns false when the connection must be dropped
+    private boolean respond(Request request, OutputStream out) throws IOException {
+        byte[] body = mBody;
+        String etag = mETag;
+
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null && ifNoneMatch.equals(etag)) {
+            writeHead(out, "304 Not Modified", "ETag: " + etag + "\r\n");
+            out.flush();
+            return true;
+        }
+
+        int start = 0;
+        int end = body.length - 1;
+        boolean isPartial = false;
+        String range = request.getHeader("Range");
+        String ifRange = request.getHeader("If-Range");
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            String[] bounds = range.substring("bytes=".length()).split("-", -1);
+            start = Integer.parseInt(bounds[0]);
+            if (bounds.length > 1 && !bounds[1].isEmpty()) {
+                end = Math.min(Integer.parseInt(bounds[1]), body.length - 1);
+            }
+            if (start >= body.length) {
+                writeHead(out, "416 Range Not Satisfiable", "Content-Length: 0\r\n");
+                out.flush();
+                return true;
+            }
+            if (mIsRangeMisaligned) {
+                start = 0;
+            }
+            isPartial = true;
+        }
+
+        byte[] payload = new byte[end - start + 1];
+        System.arraycopy(body, start, payload, 0, payload.length);
+        StringBuilder headers = new StringBuilder();
+        headers.append("ETag: ").append(etag).append("\r\n");
+        headers.append("Accept-Ranges: bytes\r\n");
+        if (isPartial) {
+            headers.append("Content-Range: bytes ").append(start).append('-').append(end)
+                    .append('/').append(body.length).append("\r\n");
+        }
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (!isPartial && mIsGzipEnabled && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            payload = gzip(payload);
+            headers.append("Content-Encoding: gzip\r\n");
+        }
+        headers.append("Content-Length: ").append(payload.length).append("\r\n");
+        writeHead(out, isPartial ? "206 Partial Content" : "200 OK", headers.toString());
+
+        int cutAfterBytes = mCutAfterBytes;
+        if (cutAfterBytes >= 0 && cutAfterBytes < payload.length) {
+            mCutAfterBytes = -1;
+            out.write(payload, 0, cutAfterBytes);
+            out.flush();
+            return false;
+        }
+
+        out.write(payload);
+        out.flush();
+        return true;
+    }
+
+    private static void writeHead(OutputStream out, String status, String headers) throws IOException {
+        out.write(("HTTP/1.1 " + status + "\r\n" + headers + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        GZIPOutputStream gzipStream = new GZIPOutputStream(buffer);
+        gzipStream.write(data);
+        gzipStream.close();
+        return buffer.toByteArray();
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int ch;
+        while ((ch = in.read()) >= 0 && ch != '\n') {
+            if (ch != '\r') {
+                line.append((char) ch);
+            }
+        }
+        if (ch < 0 && line.length() == 0) {
+            return null;
+        }
+
+        return line.toString();
+    }
+}
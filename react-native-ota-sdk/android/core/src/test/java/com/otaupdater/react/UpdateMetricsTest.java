@@ -0,0 +1,168 @@
+package com.otaupdater.react;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class UpdateMetricsTest {
+
+    private static final byte[] BODY = "__d(function(){return 1;});\n".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private TestHttpServer mServer;
+    private BundleManager mBundleManager;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new TestHttpServer();
+        mServer.setBody(BODY);
+        mBundleManager = new BundleManager(mTemporaryFolder.getRoot().getAbsolutePath());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.close();
+        mBundleManager.clearUpdates();
+    }
+
+    @Test
+    public void downloadRecordsPhasesAndBytes() throws IOException {
+        // The metrics ring is shared by every instance, so entries are told apart by package hash
+        String packageHash = "metrics-download-" + System.nanoTime();
+        mBundleManager.downloadPackage(createUpdatePackage(packageHash, null), OTAConstants.DEFAULT_JS_BUNDLE_NAME, null);
+
+        JSONObject entry = findEntry(UpdateMetrics.TYPE_DOWNLOAD, packageHash);
+        assertNotNull(entry);
+        assertTrue(entry.optBoolean("success"));
+        assertNull(entry.opt("error"));
+        assertTrue(entry.optLong("duration") >= 0);
+
+        JSONObject phases = entry.optJSONObject("phases");
+        assertTrue(phases.has("connect"));
+        assertTrue(phases.has("transfer"));
+        assertTrue(phases.has("publish"));
+
+        JSONObject stats = entry.optJSONObject("stats");
+        assertEquals(BODY.length, stats.optLong("bytes"));
+        assertEquals(0, stats.optLong("resumedBytes"));
+    }
+
+    @Test
+    public void failedDownloadRecordsTheError() throws IOException {
+        String packageHash = "metrics-failure-" + System.nanoTime();
+        try {
+            mBundleManager.downloadPackage(createUpdatePackage(packageHash, "0000"), OTAConstants.DEFAULT_JS_BUNDLE_NAME, null);
+            fail("Download with a wrong hash should fail");
+        } catch (OTAInvalidUpdateException e) {
+            // Expected
+        }
+
+        JSONObject entry = findEntry(UpdateMetrics.TYPE_DOWNLOAD, packageHash);
+        assertNotNull(entry);
+        assertFalse(entry.optBoolean("success"));
+        assertNotNull(entry.optString("error", null));
+    }
+
+    @Test
+    public void installRecordsAnEntry() throws IOException {
+        String packageHash = "metrics-install-" + System.nanoTime();
+        JSONObject updatePackage = createUpdatePackage(packageHash, null);
+        mBundleManager.downloadPackage(updatePackage, OTAConstants.DEFAULT_JS_BUNDLE_NAME, null);
+        mBundleManager.installPackage(updatePackage, false);
+
+        JSONObject entry = findEntry(UpdateMetrics.TYPE_INSTALL, packageHash);
+        assertNotNull(entry);
+        assertTrue(entry.optBoolean("success"));
+        assertTrue(entry.optJSONObject("phases").has("metadataWrite"));
+    }
+
+    @Test
+    public void installOfTheCurrentPackageRecordsAnEntry() throws IOException {
+        String packageHash = "metrics-install-current-" + System.nanoTime();
+        JSONObject updatePackage = createUpdatePackage(packageHash, null);
+        mBundleManager.downloadPackage(updatePackage, OTAConstants.DEFAULT_JS_BUNDLE_NAME, null);
+        mBundleManager.installPackage(updatePackage, false);
+
+        mBundleManager.installPackage(updatePackage, false);
+
+        JSONObject entry = findEntry(UpdateMetrics.TYPE_INSTALL, packageHash);
+        assertTrue(entry.optBoolean("success"));
+        // The latest entry is the second install, the first one has no path
+        assertEquals("alreadyCurrent", entry.optJSONObject("stats").optString("path"));
+    }
+
+    @Test
+    public void operationIsRecordedOnce() {
+        String packageHash = "metrics-once-" + System.nanoTime();
+        UpdateMetrics metrics = new UpdateMetrics(UpdateMetrics.TYPE_LOAD, packageHash);
+        metrics.addPhaseDuration("read", 5);
+        metrics.addPhaseDuration("read", 7);
+        metrics.finish();
+        metrics.fail("Too late");
+
+        int count = 0;
+        JSONArray entries = OTAMetrics.getInstance().getEntries();
+        for (int i = 0; i < entries.length(); i++) {
+            if (packageHash.equals(entries.optJSONObject(i).optString("packageHash"))) {
+                count++;
+            }
+        }
+        assertEquals(1, count);
+
+        JSONObject entry = findEntry(UpdateMetrics.TYPE_LOAD, packageHash);
+        assertTrue(entry.optBoolean("success"));
+        assertEquals(12, entry.optJSONObject("phases").optLong("read"));
+    }
+
+    @Test
+    public void ringKeepsTheMostRecentEntries() {
+        String firstHash = "metrics-ring-first-" + System.nanoTime();
+        new UpdateMetrics(UpdateMetrics.TYPE_LOAD, firstHash).finish();
+        for (int i = 0; i < 100; i++) {
+            new UpdateMetrics(UpdateMetrics.TYPE_LOAD, "metrics-ring-" + i).finish();
+        }
+
+        JSONArray entries = OTAMetrics.getInstance().getEntries();
+        assertEquals(100, entries.length());
+        assertNull(findEntry(UpdateMetrics.TYPE_LOAD, firstHash));
+        assertEquals("metrics-ring-99", entries.optJSONObject(99).optString("packageHash"));
+    }
+
+    private JSONObject createUpdatePackage(String packageHash, String sha256) {
+        JSONObject updatePackage = new JSONObject();
+        OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.PACKAGE_HASH_KEY, packageHash);
+        OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.DOWNLOAD_URL_KEY, mServer.getUrl("/" + packageHash));
+        if (sha256 != null) {
+            OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.DOWNLOAD_SHA256_KEY, sha256);
+        }
+        return updatePackage;
+    }
+
+    private static JSONObject findEntry(String type, String packageHash) {
+        JSONArray entries = OTAMetrics.getInstance().getEntries();
+        for (int i = entries.length() - 1; i >= 0; i--) {
+            JSONObject entry = entries.optJSONObject(i);
+            if (type.equals(entry.optString("type")) && packageHash.equals(entry.optString("packageHash"))) {
+                return entry;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,120 @@
+package com.otaupdater.react;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class UrlConnectionTransportTest {
+
+    private static final byte[] BODY = "var bundle = 1;\n".getBytes(StandardCharsets.UTF_8);
+
+    private TestHttpServer mServer;
+    private UrlConnectionTransport mTransport;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new TestHttpServer();
+        mServer.setBody(BODY);
+        mTransport = new UrlConnectionTransport();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.close();
+    }
+
+    @Test
+    public void closedResponsesReuseTheConnection() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            HttpResponse response = mTransport.execute(new URL(mServer.getUrl("/bundle")), new HashMap<String, String>());
+            try {
+                assertEquals(200, response.getStatusCode());
+                assertArrayEquals(BODY, readFully(response.getBody()));
+            } finally {
+                response.close();
+            }
+        }
+
+        assertEquals(5, mServer.getRequests().size());
+        assertEquals(1, mServer.getConnectionCount());
+    }
+
+    @Test
+    public void notModifiedResponseHasNoBodyAndKeepsTheConnection() throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("If-None-Match", "\"v1\"");
+        HttpResponse response = mTransport.execute(new URL(mServer.getUrl("/bundle")), headers);
+        try {
+            assertEquals(304, response.getStatusCode());
+            assertEquals("\"v1\"", response.getHeader("ETag"));
+        } finally {
+            response.close();
+        }
+
+        response = mTransport.execute(new URL(mServer.getUrl("/bundle")), new HashMap<String, String>());
+        try {
+            assertEquals(200, response.getStatusCode());
+            assertArrayEquals(BODY, readFully(response.getBody()));
+        } finally {
+            response.close();
+        }
+
+        assertEquals(1, mServer.getConnectionCount());
+    }
+
+    @Test
+    public void unreadBodyIsDrainedSoTheConnectionIsReused() throws IOException {
+        HttpResponse response = mTransport.execute(new URL(mServer.getUrl("/bundle")), new HashMap<String, String>());
+        assertEquals(200, response.getStatusCode());
+        response.close();
+
+        response = mTransport.execute(new URL(mServer.getUrl("/bundle")), new HashMap<String, String>());
+        try {
+            assertArrayEquals(BODY, readFully(response.getBody()));
+        } finally {
+            response.close();
+        }
+
+        assertEquals(1, mServer.getConnectionCount());
+    }
+
+    @Test
+    public void stalledServerTimesOut() throws IOException {
+        ServerSocket stalledServer = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        try {
+            // Accepted by the backlog but never answered
+            URL url = new URL("http://127.0.0.1:" + stalledServer.getLocalPort() + "/bundle");
+            new UrlConnectionTransport(1000, 200).execute(url, new HashMap<String, String>());
+            fail("Expected the request to time out");
+        } catch (SocketTimeoutException e) {
+            // Expected
+        } finally {
+            stalledServer.close();
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] data = new byte[1024];
+        int numBytesRead;
+        while ((numBytesRead = in.read(data)) >= 0) {
+            buffer.write(data, 0, numBytesRead);
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,95 @@
+package com.otaupdater.react;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructStat;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+
+public class AndroidPlatform implements OTAPlatform {
+
+    private static boolean sIsInstalled = false;
+
+    // Called before the module touches the core, later calls do nothing
+    public static synchronized void install() {
+        if (!sIsInstalled) {
+            OTAUtils.setPlatform(new AndroidPlatform());
+            sIsInstalled = true;
+        }
+    }
+
+    @Override
+    public void log(String message) {
+        Log.d(OTAConstants.REACT_NATIVE_LOG_TAG, "[OTAUpdater] " + message);
+    }
+
+    @Override
+    public void log(Throwable tr) {
+        Log.e(OTAConstants.REACT_NATIVE_LOG_TAG, "[OTAUpdater] Exception", tr);
+    }
+
+    @Override
+    public long elapsedRealtime() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public void setThreadPriority(int priority) {
+        if (priority == THREAD_PRIORITY_HIGH) {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_DEFAULT + Process.THREAD_PRIORITY_MORE_FAVORABLE);
+        } else if (priority == THREAD_PRIORITY_BACKGROUND) {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        } else {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_DEFAULT);
+        }
+    }
+
+    @Override
+    public void link(File source, File dest) throws IOException {
+        try {
+            Os.link(source.getAbsolutePath(), dest.getAbsolutePath());
+        } catch (ErrnoException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void syncDirectory(File directory) throws IOException {
+        try {
+            FileDescriptor fd = Os.open(directory.getAbsolutePath(), OsConstants.O_RDONLY, 0);
+            try {
+                Os.fsync(fd);
+            } finally {
+                Os.close(fd);
+            }
+        } catch (ErrnoException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public int getLinkCount(File file) throws IOException {
+        try {
+            return (int) Os.stat(file.getAbsolutePath()).st_nlink;
+        } catch (ErrnoException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean isSameFile(File first, File second) throws IOException {
+        try {
+            StructStat firstStat = Os.stat(first.getAbsolutePath());
+            StructStat secondStat = Os.stat(second.getAbsolutePath());
+            return firstStat.st_dev == secondStat.st_dev && firstStat.st_ino == secondStat.st_ino;
+        } catch (ErrnoException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+}
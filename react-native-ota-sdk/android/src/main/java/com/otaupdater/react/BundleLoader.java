@@ -1,12 +1,15 @@
 package com.otaupdater.react;
 
 import android.app.Activity;
+import android.os.SystemClock;
 
 import com.facebook.react.ReactApplication;
 import com.facebook.react.ReactInstanceManager;
 import com.facebook.react.bridge.JSBundleLoader;
 import com.facebook.react.bridge.ReactApplicationContext;
 
+import org.json.JSONArray;
+
 import java.lang.reflect.Field;
 
 public class BundleLoader {
@@ -41,6 +44,18 @@ public class BundleLoader {
         }
     }
 
+    // Reads the bundle and the listed assets once so the reload finds them in the page cache,
+    // returns the time it took in milliseconds
+    public static long prewarmBundle(String bundlePath, JSONArray assetPaths) {
+        long startTime = SystemClock.elapsedRealtime();
+        long bytesRead = BundlePrewarmer.prewarm(bundlePath, assetPaths);
+        long duration = SystemClock.elapsedRealtime() - startTime;
+        if (bytesRead > 0) {
+            OTAUtils.log("Prewarmed " + bytesRead + " bytes in " + duration + "ms");
+        }
+        return duration;
+    }
+
     public static ReactInstanceManager resolveInstanceManager(Activity currentActivity) {
         if (currentActivity == null) {
             return null;
@@ -0,0 +1,186 @@
+package com.otaupdater.react;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.facebook.react.ReactApplication;
+import com.facebook.react.ReactInstanceEventListener;
+import com.facebook.react.ReactInstanceManager;
+import com.facebook.react.ReactNativeHost;
+import com.facebook.react.ReactRootView;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.modules.core.DefaultHardwareBackBtnHandler;
+
+/**
+ * Loads a bundle into a second ReactInstanceManager while the current one keeps running, and
+ * moves the root view over once the new context is initialized. If preparation fails or times
+ * out, the new instance is destroyed and the running app is left untouched. The swap relies on
+ * ReactNativeHost internals, so when they are missing the caller is told to reload normally.
+ */
+public class BundleSwapper {
+
+    private static final ReactHostAccess sHostAccess = new ReactHostAccess(ReactNativeHost.class);
+
+    public interface Callback {
+        void onSwapped();
+
+        void onFailed(String message);
+    }
+
+    private final Activity mActivity;
+    private final ReactNativeHost mReactNativeHost;
+    private final ReactRootView mRootView;
+    private final Callback mCallback;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private ReactInstanceManager mNewInstanceManager;
+    private boolean mIsFinished = false;
+
+    private BundleSwapper(Activity activity, ReactRootView rootView, Callback callback) {
+        mActivity = activity;
+        mReactNativeHost = ((ReactApplication) activity.getApplication()).getReactNativeHost();
+        mRootView = rootView;
+        mCallback = callback;
+    }
+
+    // Must be called on the main thread, the callback runs on the main thread as well. Returns false
+    // without calling the callback when a swap isn't possible here, the caller then reloads normally.
+    public static boolean prepareAndSwap(Activity activity, String bundlePath, ReactApplicationContext reactContext,
+                                         long timeoutMs, Callback callback) {
+        ReactRootView rootView = findReactRootView(activity.getWindow().getDecorView());
+        String unsupportedReason = getUnsupportedReason(sHostAccess, activity.getApplication() instanceof ReactApplication,
+                rootView != null);
+        if (unsupportedReason != null) {
+            OTAUtils.log("Background reload unavailable, reloading normally: " + unsupportedReason);
+            return false;
+        }
+
+        new BundleSwapper(activity, rootView, callback).prepare(bundlePath, reactContext, timeoutMs);
+        return true;
+    }
+
+    // Null when a swap can be attempted
+    static String getUnsupportedReason(ReactHostAccess hostAccess, boolean isReactApplication, boolean hasRootView) {
+        if (hostAccess.getUnavailableReason() != null) {
+            return hostAccess.getUnavailableReason();
+        } else if (!isReactApplication) {
+            return "The application doesn't implement ReactApplication";
+        } else if (!hasRootView) {
+            return "No ReactRootView found in the current activity";
+        }
+
+        return null;
+    }
+
+    private void prepare(String bundlePath, ReactApplicationContext reactContext, final long timeoutMs) {
+        try {
+            mNewInstanceManager = (ReactInstanceManager) sHostAccess.createInstanceManager(mReactNativeHost);
+            BundleLoader.loadBundle(mNewInstanceManager, bundlePath, reactContext);
+        } catch (Exception e) {
+            OTAUtils.log(e);
+            fail("Unable to prepare a new React instance: " + e.getMessage());
+            return;
+        }
+
+        final Runnable timeout = new Runnable() {
+            @Override
+            public void run() {
+                fail("New bundle did not initialize within " + timeoutMs + "ms");
+            }
+        };
+        mNewInstanceManager.addReactInstanceEventListener(new ReactInstanceEventListener() {
+            @Override
+            public void onReactContextInitialized(ReactContext context) {
+                mNewInstanceManager.removeReactInstanceEventListener(this);
+                mHandler.removeCallbacks(timeout);
+                swap();
+            }
+        });
+        mHandler.postDelayed(timeout, timeoutMs);
+        mNewInstanceManager.createReactContextInBackground();
+    }
+
+    private void swap() {
+        if (mIsFinished) {
+            return;
+        }
+
+        ReactInstanceManager oldInstanceManager = mReactNativeHost.getReactInstanceManager();
+        String moduleName = mRootView.getJSModuleName();
+        Bundle appProperties = mRootView.getAppProperties();
+        boolean isUnmounted = false;
+        try {
+            sHostAccess.setInstanceManager(mReactNativeHost, mNewInstanceManager);
+            mRootView.unmountReactApplication();
+            isUnmounted = true;
+            mRootView.startReactApplication(mNewInstanceManager, moduleName, appProperties);
+            resumeInstanceManager(mNewInstanceManager);
+        } catch (Exception e) {
+            OTAUtils.log(e);
+            try {
+                sHostAccess.setInstanceManager(mReactNativeHost, oldInstanceManager);
+                if (isUnmounted) {
+                    mRootView.unmountReactApplication();
+                    mRootView.startReactApplication(oldInstanceManager, moduleName, appProperties);
+                    resumeInstanceManager(oldInstanceManager);
+                }
+            } catch (Exception restoreError) {
+                OTAUtils.log(restoreError);
+            }
+            fail("Unable to switch to the new React instance: " + e.getMessage());
+            return;
+        }
+
+        mIsFinished = true;
+        mCallback.onSwapped();
+
+        if (oldInstanceManager != null) {
+            oldInstanceManager.onHostDestroy(mActivity);
+            oldInstanceManager.destroy();
+        }
+    }
+
+    private void fail(String message) {
+        if (mIsFinished) {
+            return;
+        }
+
+        mIsFinished = true;
+        if (mNewInstanceManager != null) {
+            mNewInstanceManager.destroy();
+        }
+        OTAUtils.log("Keeping the running bundle: " + message);
+        mCallback.onFailed(message);
+    }
+
+    private void resumeInstanceManager(ReactInstanceManager instanceManager) {
+        if (mActivity instanceof DefaultHardwareBackBtnHandler) {
+            instanceManager.onHostResume(mActivity, (DefaultHardwareBackBtnHandler) mActivity);
+        } else {
+            instanceManager.onHostResume(mActivity);
+        }
+    }
+
+    private static ReactRootView findReactRootView(View view) {
+        if (view instanceof ReactRootView) {
+            return (ReactRootView) view;
+        }
+
+        if (view instanceof ViewGroup) {
+            ViewGroup viewGroup = (ViewGroup) view;
+            for (int i = 0; i < viewGroup.getChildCount(); i++) {
+                ReactRootView rootView = findReactRootView(viewGroup.getChildAt(i));
+                if (rootView != null) {
+                    return rootView;
+                }
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,75 @@
+package com.otaupdater.react;
+
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks in-flight package downloads by package hash, so a second request for a package that
+ * is already downloading waits for the running download instead of starting another one. There
+ * is one registry per process: after a reload the new module instance still joins downloads
+ * that the old one started.
+ */
+public class DownloadRegistry {
+
+    private static DownloadRegistry sInstance;
+
+    private final Map<String, List<Promise>> mInFlightDownloads = new HashMap<>();
+
+    public static synchronized DownloadRegistry getInstance() {
+        if (sInstance == null) {
+            sInstance = new DownloadRegistry();
+        }
+
+        return sInstance;
+    }
+
+    private DownloadRegistry() {
+    }
+
+    // Returns true when the caller started a new download and must complete it
+    public synchronized boolean join(String packageHash, Promise promise) {
+        List<Promise> promises = mInFlightDownloads.get(packageHash);
+        if (promises != null) {
+            promises.add(promise);
+            return false;
+        }
+
+        promises = new ArrayList<>();
+        promises.add(promise);
+        mInFlightDownloads.put(packageHash, promises);
+        return true;
+    }
+
+    public void resolve(String packageHash, BundleManager bundleManager) {
+        for (Promise promise : complete(packageHash)) {
+            // Every promise needs its own map, the bridge consumes it on resolve
+            try {
+                WritableMap downloadedPackage = bundleManager.readPackageMetadata(packageHash, OTAReactUtils.WRITABLE_MAP_READER);
+                if (downloadedPackage == null) {
+                    throw new OTAUnknownException("Package " + packageHash + " is missing after its download");
+                }
+                promise.resolve(downloadedPackage);
+            } catch (IOException | RuntimeException e) {
+                OTAUtils.log(e);
+                promise.reject("DOWNLOAD_ERROR", e.getMessage(), e);
+            }
+        }
+    }
+
+    public void reject(String packageHash, String code, Exception e) {
+        for (Promise promise : complete(packageHash)) {
+            promise.reject(code, e.getMessage(), e);
+        }
+    }
+
+    private synchronized List<Promise> complete(String packageHash) {
+        List<Promise> promises = mInFlightDownloads.remove(packageHash);
+        return promises != null ? promises : new ArrayList<Promise>();
+    }
+}
@@ -1,28 +0,0 @@
-package com.otaupdater.react;
-
-public class OTAConstants {
-    public static final String ASSETS_BUNDLE_PREFIX = "assets://";
-    public static final String CODE_PUSH_FOLDER_PREFIX = "OTAUpdates";
-    public static final String CODE_PUSH_PREFERENCES = "OTAUpdater";
-    public static final String CURRENT_PACKAGE_KEY = "currentPackage";
-    public static final String DEFAULT_JS_BUNDLE_NAME = "index.android.bundle";
-    public static final int DOWNLOAD_BUFFER_SIZE = 1024 * 256;
-    public static final String DOWNLOAD_FILE_NAME = "download.zip";
-    public static final String DOWNLOAD_PROGRESS_EVENT_NAME = "OTADownloadProgress";
-    public static final String DOWNLOAD_URL_KEY = "downloadUrl";
-    public static final String FAILED_UPDATES_KEY = "OTA_FAILED_UPDATES";
-    public static final String PACKAGE_FILE_NAME = "app.json";
-    public static final String PACKAGE_HASH_KEY = "packageHash";
-    public static final String PENDING_UPDATE_HASH_KEY = "hash";
-    public static final String PENDING_UPDATE_IS_LOADING_KEY = "isLoading";
-    public static final String PENDING_UPDATE_KEY = "OTA_PENDING_UPDATE";
-    public static final String PREVIOUS_PACKAGE_KEY = "previousPackage";
-    public static final String REACT_NATIVE_LOG_TAG = "ReactNative";
-    public static final String RELATIVE_BUNDLE_PATH_KEY = "bundlePath";
-    public static final String STATUS_FILE = "ota.json";
-    public static final String UNZIPPED_FOLDER_NAME = "unzipped";
-    public static final String VERSION_NAME_KEY = "versionName";
-    public static final String VERSION_CODE_KEY = "versionCode";
-    public static final String CLIENT_UNIQUE_ID_KEY = "clientUniqueId";
-}
-
@@ -5,7 +5,6 @@ import android.content.Intent;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
@@ -13,33 +12,50 @@ import android.os.Looper;
 import androidx.core.content.FileProvider;
 
 import com.facebook.react.ReactApplication;
+import com.facebook.react.ReactInstanceEventListener;
 import com.facebook.react.ReactInstanceManager;
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.LifecycleEventListener;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.File;
-import java.io.IOException;
 
 public class OTANativeModule extends ReactContextBaseJavaModule {
     private BundleManager mBundleManager;
     private SettingsManager mSettingsManager;
+    private final DownloadRegistry mDownloadRegistry = DownloadRegistry.getInstance();
     private String mAppVersion;
     private String mBundleFileName;
+    private long mProgressIntervalMs = OTAConstants.DEFAULT_PROGRESS_INTERVAL_MS;
+    private long mProgressMinBytes = OTAConstants.DEFAULT_PROGRESS_MIN_BYTES;
+    private boolean mPrewarmBundle = false;
+    private JSONArray mPrewarmAssets = new JSONArray();
+    private boolean mBackgroundReload = false;
+    private long mBackgroundReloadTimeoutMs = OTAConstants.DEFAULT_BACKGROUND_RELOAD_TIMEOUT_MS;
 
     public OTANativeModule(ReactApplicationContext reactContext) {
+        this(reactContext, null);
+    }
+
+    public OTANativeModule(ReactApplicationContext reactContext, HttpTransport httpTransport) {
         super(reactContext);
         
+        AndroidPlatform.install();
         String documentsDirectory = reactContext.getFilesDir().getAbsolutePath();
         mBundleManager = new BundleManager(documentsDirectory);
+        if (httpTransport != null) {
+            mBundleManager.setHttpTransport(httpTransport);
+        }
         mSettingsManager = new SettingsManager(reactContext.getApplicationContext());
         
         try {
@@ -59,44 +75,62 @@ public class OTANativeModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void downloadBundle(String url, String versionName, final Promise promise) {
-        AsyncTask<Void, Void, Void> asyncTask = new AsyncTask<Void, Void, Void>() {
+        JSONObject updatePackage = new JSONObject();
+        OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.DOWNLOAD_URL_KEY, url);
+        OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.VERSION_NAME_KEY, versionName);
+        downloadUpdatePackage(updatePackage, promise);
+    }
+
+    @ReactMethod
+    public void downloadPackage(ReadableMap updatePackage, final Promise promise) {
+        downloadUpdatePackage(OTAReactUtils.convertReadableToJsonObject(updatePackage), promise);
+    }
+
+    private void downloadUpdatePackage(final JSONObject updatePackage, final Promise promise) {
+        String hash = updatePackage.optString(OTAConstants.PACKAGE_HASH_KEY, null);
+        if (hash == null) {
+            // Generate hash from version
+            String versionName = updatePackage.optString(OTAConstants.VERSION_NAME_KEY, "unknown");
+            hash = String.valueOf(versionName.hashCode());
+            OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.PACKAGE_HASH_KEY, hash);
+        }
+
+        final String packageHash = hash;
+        if (!mDownloadRegistry.join(packageHash, promise)) {
+            // Progress events are shared, the caller only waits for the running download's result
+            OTAUtils.log("Package " + packageHash + " is already downloading, waiting for it");
+            return;
+        }
+
+        OTAExecutor.getInstance().executeDownload(new Runnable() {
             @Override
-            protected Void doInBackground(Void... params) {
+            public void run() {
                 try {
-                    JSONObject updatePackage = new JSONObject();
-                    OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.DOWNLOAD_URL_KEY, url);
-                    OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.VERSION_NAME_KEY, versionName);
-                    
-                    // Generate hash from version
-                    String packageHash = String.valueOf(versionName.hashCode());
-                    OTAUtils.setJSONValueForKey(updatePackage, OTAConstants.PACKAGE_HASH_KEY, packageHash);
-                    
-                    mBundleManager.downloadPackage(updatePackage, mBundleFileName, new DownloadProgressCallback() {
+                    ThrottledProgressCallback progressCallback = new ThrottledProgressCallback(new DownloadProgressCallback() {
                         @Override
                         public void call(DownloadProgress downloadProgress) {
                             getReactApplicationContext()
                                     .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
-                                    .emit(OTAConstants.DOWNLOAD_PROGRESS_EVENT_NAME, downloadProgress.createWritableMap());
+                                    .emit(OTAConstants.DOWNLOAD_PROGRESS_EVENT_NAME, OTAReactUtils.convertDownloadProgressToWritable(downloadProgress));
                         }
-                    });
+                    }, mProgressIntervalMs, mProgressMinBytes);
+                    mBundleManager.downloadPackage(updatePackage, mBundleFileName, progressCallback);
+                    progressCallback.flush();
                     
-                    JSONObject downloadedPackage = mBundleManager.getPackage(packageHash);
-                    promise.resolve(OTAUtils.convertJsonObjectToWritable(downloadedPackage));
+                    mDownloadRegistry.resolve(packageHash, mBundleManager);
                 } catch (Exception e) {
                     OTAUtils.log(e);
-                    promise.reject("DOWNLOAD_ERROR", e.getMessage(), e);
+                    mDownloadRegistry.reject(packageHash, "DOWNLOAD_ERROR", e);
                 }
-                return null;
             }
-        };
-        asyncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        });
     }
 
     @ReactMethod
     public void installBundle(String bundlePath, final Promise promise) {
-        AsyncTask<Void, Void, Void> asyncTask = new AsyncTask<Void, Void, Void>() {
+        OTAExecutor.getInstance().executeIo(new Runnable() {
             @Override
-            protected Void doInBackground(Void... params) {
+            public void run() {
                 try {
                     // Extract package hash from bundle path
                     String packageHash = extractPackageHashFromPath(bundlePath);
@@ -111,16 +145,16 @@ public class OTANativeModule extends ReactContextBaseJavaModule {
                     
                     mBundleManager.installPackage(packageInfo, false);
                     mSettingsManager.savePendingUpdate(packageHash, false);
+                    // The pending marker drives rollback if the new bundle crashes, so make it durable before loading
+                    mSettingsManager.flush();
                     
                     promise.resolve(null);
                 } catch (Exception e) {
                     OTAUtils.log(e);
                     promise.reject("INSTALL_ERROR", e.getMessage(), e);
                 }
-                return null;
             }
-        };
-        asyncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        });
     }
 
     @ReactMethod
@@ -132,24 +166,18 @@ public class OTANativeModule extends ReactContextBaseJavaModule {
                 return;
             }
 
-            new Handler(Looper.getMainLooper()).post(new Runnable() {
+            if (!mPrewarmBundle) {
+                reloadBundle(currentActivity, bundlePath, -1, promise);
+                return;
+            }
+
+            // Pull the bundle into the page cache off the main thread, so the reload reads it from memory
+            final JSONArray prewarmAssets = mPrewarmAssets;
+            OTAExecutor.getInstance().executeIo(new Runnable() {
                 @Override
                 public void run() {
-                    try {
-                        ReactInstanceManager instanceManager = BundleLoader.resolveInstanceManager(currentActivity);
-                        if (instanceManager == null) {
-                            promise.reject("LOAD_ERROR", "ReactInstanceManager is null");
-                            return;
-                        }
-
-                        BundleLoader.loadBundle(instanceManager, bundlePath, getReactApplicationContext());
-                        instanceManager.recreateReactContextInBackground();
-                        
-                        promise.resolve(null);
-                    } catch (Exception e) {
-                        OTAUtils.log(e);
-                        promise.reject("LOAD_ERROR", e.getMessage(), e);
-                    }
+                    long prewarmDuration = BundleLoader.prewarmBundle(bundlePath, prewarmAssets);
+                    reloadBundle(currentActivity, bundlePath, prewarmDuration, promise);
                 }
             });
         } catch (Exception e) {
@@ -158,33 +186,95 @@ public class OTANativeModule extends ReactContextBaseJavaModule {
         }
     }
 
-    @ReactMethod
-    public void getCurrentBundle(final Promise promise) {
-        AsyncTask<Void, Void, Void> asyncTask = new AsyncTask<Void, Void, Void>() {
+    private void reloadBundle(final Activity currentActivity, final String bundlePath, final long prewarmDuration,
+                              final Promise promise) {
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
             @Override
-            protected Void doInBackground(Void... params) {
+            public void run() {
+                final UpdateMetrics metrics = new UpdateMetrics(UpdateMetrics.TYPE_LOAD, extractPackageHashFromPath(bundlePath));
+                if (prewarmDuration >= 0) {
+                    metrics.addPhaseDuration("prewarm", prewarmDuration);
+                }
+                final long phaseStart = UpdateMetrics.now();
                 try {
-                    JSONObject currentPackage = mBundleManager.getCurrentPackage();
-                    if (currentPackage != null) {
-                        promise.resolve(OTAUtils.convertJsonObjectToWritable(currentPackage));
+                    final ReactInstanceManager instanceManager = BundleLoader.resolveInstanceManager(currentActivity);
+                    if (instanceManager == null) {
+                        metrics.fail("ReactInstanceManager is null");
+                        promise.reject("LOAD_ERROR", "ReactInstanceManager is null");
+                        return;
+                    }
+
+                    final WritableMap result;
+                    if (prewarmDuration >= 0) {
+                        result = Arguments.createMap();
+                        result.putDouble(OTAConstants.PREWARM_DURATION_KEY, prewarmDuration);
                     } else {
-                        promise.resolve(null);
+                        result = null;
+                    }
+
+                    // The running context stays active until the new one is ready, and is kept if that fails.
+                    // Without the React Native internals the swap needs, this falls through to a normal reload.
+                    if (mBackgroundReload && BundleSwapper.prepareAndSwap(currentActivity, bundlePath,
+                            getReactApplicationContext(), mBackgroundReloadTimeoutMs, new BundleSwapper.Callback() {
+                                @Override
+                                public void onSwapped() {
+                                    metrics.addPhase("prepare", phaseStart);
+                                    metrics.finish();
+                                    promise.resolve(result);
+                                }
+
+                                @Override
+                                public void onFailed(String message) {
+                                    metrics.addPhase("prepare", phaseStart);
+                                    metrics.fail(message);
+                                    promise.reject("LOAD_ERROR", message);
+                                }
+                            })) {
+                        return;
                     }
+
+                    BundleLoader.loadBundle(instanceManager, bundlePath, getReactApplicationContext());
+                    // The promise settles once the reload starts, the metrics entry once the new context is up
+                    instanceManager.addReactInstanceEventListener(new ReactInstanceEventListener() {
+                        @Override
+                        public void onReactContextInitialized(ReactContext context) {
+                            instanceManager.removeReactInstanceEventListener(this);
+                            metrics.addPhase("reload", phaseStart);
+                            metrics.finish();
+                        }
+                    });
+                    instanceManager.recreateReactContextInBackground();
+                    promise.resolve(result);
+                } catch (Exception e) {
+                    OTAUtils.log(e);
+                    metrics.fail(e.getMessage());
+                    promise.reject("LOAD_ERROR", e.getMessage(), e);
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    public void getCurrentBundle(final Promise promise) {
+        OTAExecutor.getInstance().executeMetadata(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // JS only reads the metadata, so it goes from the file to the bridge without a JSONObject
+                    promise.resolve(mBundleManager.readCurrentPackageMetadata(OTAReactUtils.WRITABLE_MAP_READER));
                 } catch (Exception e) {
                     OTAUtils.log(e);
                     promise.reject("GET_BUNDLE_ERROR", e.getMessage(), e);
                 }
-                return null;
             }
-        };
-        asyncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        });
     }
 
     @ReactMethod
     public void clearBundles(final Promise promise) {
-        AsyncTask<Void, Void, Void> asyncTask = new AsyncTask<Void, Void, Void>() {
+        OTAExecutor.getInstance().executeIo(new Runnable() {
             @Override
-            protected Void doInBackground(Void... params) {
+            public void run() {
                 try {
                     mBundleManager.clearUpdates();
                     promise.resolve(null);
@@ -192,10 +282,8 @@ public class OTANativeModule extends ReactContextBaseJavaModule {
                     OTAUtils.log(e);
                     promise.reject("CLEAR_ERROR", e.getMessage(), e);
                 }
-                return null;
             }
-        };
-        asyncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        });
     }
 
     @ReactMethod
@@ -204,6 +292,18 @@ public class OTANativeModule extends ReactContextBaseJavaModule {
             WritableMap configMap = Arguments.createMap();
             configMap.putString("appVersion", mAppVersion);
             configMap.putString("bundleFileName", mBundleFileName);
+            configMap.putBoolean(OTAConstants.STREAMING_EXTRACT_KEY, mBundleManager.isStreamingExtractEnabled());
+            configMap.putBoolean(OTAConstants.CONTENT_ADDRESSED_STORE_KEY, mBundleManager.isContentAddressedStoreEnabled());
+            configMap.putBoolean(OTAConstants.SEGMENTED_DOWNLOAD_KEY, mBundleManager.isSegmentedDownloadEnabled());
+            configMap.putDouble(OTAConstants.MAX_DOWNLOAD_RATE_KEY, mBundleManager.getMaxDownloadRate());
+            configMap.putInt(OTAConstants.MAX_PACKAGES_KEY, mBundleManager.getMaxPackages());
+            configMap.putDouble(OTAConstants.MAX_STORAGE_BYTES_KEY, mBundleManager.getMaxStorageBytes());
+            configMap.putDouble(OTAConstants.PROGRESS_INTERVAL_KEY, mProgressIntervalMs);
+            configMap.putDouble(OTAConstants.PROGRESS_MIN_BYTES_KEY, mProgressMinBytes);
+            configMap.putBoolean(OTAConstants.PREWARM_BUNDLE_KEY, mPrewarmBundle);
+            configMap.putArray(OTAConstants.PREWARM_ASSETS_KEY, OTAReactUtils.convertJsonArrayToWritable(mPrewarmAssets));
+            configMap.putBoolean(OTAConstants.BACKGROUND_RELOAD_KEY, mBackgroundReload);
+            configMap.putDouble(OTAConstants.BACKGROUND_RELOAD_TIMEOUT_KEY, mBackgroundReloadTimeoutMs);
             promise.resolve(configMap);
         } catch (Exception e) {
             OTAUtils.log(e);
@@ -211,6 +311,113 @@ public class OTANativeModule extends ReactContextBaseJavaModule {
         }
     }
 
+    @ReactMethod
+    public void getExecutorStats(final Promise promise) {
+        try {
+            promise.resolve(OTAReactUtils.convertJsonObjectToWritable(OTAExecutor.getInstance().getStats()));
+        } catch (Exception e) {
+            OTAUtils.log(e);
+            promise.reject("CONFIG_ERROR", e.getMessage(), e);
+        }
+    }
+
+    @ReactMethod
+    public void getMetrics(final Promise promise) {
+        try {
+            promise.resolve(OTAReactUtils.convertJsonArrayToWritable(OTAMetrics.getInstance().getEntries()));
+        } catch (Exception e) {
+            OTAUtils.log(e);
+            promise.reject("METRICS_ERROR", e.getMessage(), e);
+        }
+    }
+
+    @ReactMethod
+    public void getCachedResponse(final String url, final Promise promise) {
+        OTAExecutor.getInstance().executeMetadata(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    JSONObject cachedResponse = mBundleManager.getCachedResponse(url);
+                    promise.resolve(cachedResponse != null ? OTAReactUtils.convertJsonObjectToWritable(cachedResponse) : null);
+                } catch (Exception e) {
+                    OTAUtils.log(e);
+                    promise.reject("HTTP_CACHE_ERROR", e.getMessage(), e);
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    public void saveCachedResponse(final String url, final ReadableMap response, final Promise promise) {
+        OTAExecutor.getInstance().executeMetadata(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mBundleManager.saveCachedResponse(url,
+                            OTAReactUtils.tryGetString(response, OTAConstants.DOWNLOAD_ETAG_KEY),
+                            OTAReactUtils.tryGetString(response, OTAConstants.DOWNLOAD_LAST_MODIFIED_KEY),
+                            OTAReactUtils.tryGetString(response, OTAConstants.RESPONSE_BODY_KEY));
+                    promise.resolve(null);
+                } catch (Exception e) {
+                    OTAUtils.log(e);
+                    promise.reject("HTTP_CACHE_ERROR", e.getMessage(), e);
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    public void configure(ReadableMap options, final Promise promise) {
+        try {
+            JSONObject config = OTAReactUtils.convertReadableToJsonObject(options);
+            if (config.has(OTAConstants.STREAMING_EXTRACT_KEY)) {
+                mBundleManager.setStreamingExtractEnabled(config.optBoolean(OTAConstants.STREAMING_EXTRACT_KEY));
+            }
+            if (config.has(OTAConstants.CONTENT_ADDRESSED_STORE_KEY)) {
+                mBundleManager.setContentAddressedStoreEnabled(config.optBoolean(OTAConstants.CONTENT_ADDRESSED_STORE_KEY));
+            }
+            if (config.has(OTAConstants.SEGMENTED_DOWNLOAD_KEY)) {
+                mBundleManager.setSegmentedDownloadEnabled(config.optBoolean(OTAConstants.SEGMENTED_DOWNLOAD_KEY));
+            }
+            if (config.has(OTAConstants.MAX_DOWNLOAD_RATE_KEY)) {
+                mBundleManager.setMaxDownloadRate(config.optLong(OTAConstants.MAX_DOWNLOAD_RATE_KEY));
+            }
+            if (config.has(OTAConstants.MAX_PACKAGES_KEY) || config.has(OTAConstants.MAX_STORAGE_BYTES_KEY)) {
+                if (config.has(OTAConstants.MAX_PACKAGES_KEY)) {
+                    mBundleManager.setMaxPackages(config.optInt(OTAConstants.MAX_PACKAGES_KEY));
+                }
+                if (config.has(OTAConstants.MAX_STORAGE_BYTES_KEY)) {
+                    mBundleManager.setMaxStorageBytes(config.optLong(OTAConstants.MAX_STORAGE_BYTES_KEY));
+                }
+                // Apply the new policy to what is already on disk
+                mBundleManager.scheduleGarbageCollection();
+            }
+            if (config.has(OTAConstants.PROGRESS_INTERVAL_KEY)) {
+                mProgressIntervalMs = Math.max(0, config.optLong(OTAConstants.PROGRESS_INTERVAL_KEY));
+            }
+            if (config.has(OTAConstants.PROGRESS_MIN_BYTES_KEY)) {
+                mProgressMinBytes = Math.max(0, config.optLong(OTAConstants.PROGRESS_MIN_BYTES_KEY));
+            }
+            if (config.has(OTAConstants.PREWARM_BUNDLE_KEY)) {
+                mPrewarmBundle = config.optBoolean(OTAConstants.PREWARM_BUNDLE_KEY);
+            }
+            if (config.has(OTAConstants.PREWARM_ASSETS_KEY)) {
+                JSONArray prewarmAssets = config.optJSONArray(OTAConstants.PREWARM_ASSETS_KEY);
+                mPrewarmAssets = prewarmAssets != null ? prewarmAssets : new JSONArray();
+            }
+            if (config.has(OTAConstants.BACKGROUND_RELOAD_KEY)) {
+                mBackgroundReload = config.optBoolean(OTAConstants.BACKGROUND_RELOAD_KEY);
+            }
+            if (config.has(OTAConstants.BACKGROUND_RELOAD_TIMEOUT_KEY)) {
+                mBackgroundReloadTimeoutMs = Math.max(0, config.optLong(OTAConstants.BACKGROUND_RELOAD_TIMEOUT_KEY));
+            }
+            promise.resolve(null);
+        } catch (Exception e) {
+            OTAUtils.log(e);
+            promise.reject("CONFIG_ERROR", e.getMessage(), e);
+        }
+    }
+
     @ReactMethod
     public void getFileProviderUri(String filePath, Promise promise) {
         try {
@@ -4,6 +4,7 @@ import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableMap;
 
 /**
  * TurboModule spec interface for new architecture support.
@@ -18,6 +19,9 @@ public abstract class OTANativeModuleSpec extends ReactContextBaseJavaModule {
     @ReactMethod
     public abstract void downloadBundle(String url, String versionName, Promise promise);
 
+    @ReactMethod
+    public abstract void downloadPackage(ReadableMap updatePackage, Promise promise);
+
     @ReactMethod
     public abstract void installBundle(String bundlePath, Promise promise);
 
@@ -33,6 +37,21 @@ public abstract class OTANativeModuleSpec extends ReactContextBaseJavaModule {
     @ReactMethod
     public abstract void getConfiguration(Promise promise);
 
+    @ReactMethod
+    public abstract void getExecutorStats(Promise promise);
+
+    @ReactMethod
+    public abstract void getMetrics(Promise promise);
+
+    @ReactMethod
+    public abstract void getCachedResponse(String url, Promise promise);
+
+    @ReactMethod
+    public abstract void saveCachedResponse(String url, ReadableMap response, Promise promise);
+
+    @ReactMethod
+    public abstract void configure(ReadableMap options, Promise promise);
+
     @ReactMethod
     public abstract void getFileProviderUri(String filePath, Promise promise);
 
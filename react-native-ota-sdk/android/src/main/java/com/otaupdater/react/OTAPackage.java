@@ -11,6 +11,16 @@ import java.util.List;
 
 public class OTAPackage implements ReactPackage {
 
+    private final HttpTransport mHttpTransport;
+
+    public OTAPackage() {
+        this(null);
+    }
+
+    public OTAPackage(HttpTransport httpTransport) {
+        mHttpTransport = httpTransport;
+    }
+
     @Override
     public List<ViewManager> createViewManagers(ReactApplicationContext reactContext) {
         return Collections.emptyList();
@@ -23,7 +33,7 @@ public class OTAPackage implements ReactPackage {
         // For now, use the same implementation for both architectures
         // The module will work with both old and new architecture
         // In the future, we can add proper TurboModule codegen support
-        modules.add(new OTANativeModule(reactContext));
+        modules.add(new OTANativeModule(reactContext, mHttpTransport));
         
         return modules;
     }
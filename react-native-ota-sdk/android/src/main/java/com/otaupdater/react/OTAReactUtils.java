@@ -1,6 +1,7 @@
 package com.otaupdater.react;
 
-import android.util.Log;
+import android.util.JsonReader;
+import android.util.MalformedJsonException;
 
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.NoSuchKeyException;
@@ -15,25 +16,30 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
 
-public class OTAUtils {
+public class OTAReactUtils {
 
-    public static String appendPathComponent(String basePath, String appendPathComponent) {
-        return new File(basePath, appendPathComponent).getAbsolutePath();
-    }
+    // Builds the WritableMap straight from the app.json token stream, without a String or JSONObject first
+    public static final PackageMetadataReader<WritableMap> WRITABLE_MAP_READER = new PackageMetadataReader<WritableMap>() {
+        @Override
+        public WritableMap read(InputStream metadataStream) throws IOException {
+            return convertJsonStreamToWritable(metadataStream);
+        }
+    };
 
     public static WritableArray convertJsonArrayToWritable(JSONArray jsonArr) {
         WritableArray arr = Arguments.createArray();
         for (int i=0; i<jsonArr.length(); i++) {
             Object obj = null;
             try {
-                obj = jsonArr.get(i);
+                if (!jsonArr.isNull(i)) {
+                    obj = jsonArr.get(i);
+                }
             } catch (JSONException jsonException) {
                 throw new OTAUnknownException(i + " should be within bounds of array " + jsonArr.toString(), jsonException);
             }
@@ -96,6 +102,107 @@ public class OTAUtils {
         return map;
     }
 
+    public static WritableMap convertJsonStreamToWritable(InputStream inputStream) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        try {
+            return readWritableMap(reader);
+        } catch (MalformedJsonException | IllegalStateException | NumberFormatException e) {
+            throw new OTAMalformedDataException("Malformed package metadata", e);
+        }
+    }
+
+    public static WritableMap readWritableMap(JsonReader reader) throws IOException {
+        WritableMap map = Arguments.createMap();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            switch (reader.peek()) {
+                case BEGIN_OBJECT:
+                    map.putMap(key, readWritableMap(reader));
+                    break;
+                case BEGIN_ARRAY:
+                    map.putArray(key, readWritableArray(reader));
+                    break;
+                case STRING:
+                    map.putString(key, reader.nextString());
+                    break;
+                case NUMBER:
+                    Number number = parseNumber(reader.nextString());
+                    if (number instanceof Integer)
+                        map.putInt(key, number.intValue());
+                    else
+                        map.putDouble(key, number.doubleValue());
+                    break;
+                case BOOLEAN:
+                    map.putBoolean(key, reader.nextBoolean());
+                    break;
+                case NULL:
+                    reader.nextNull();
+                    map.putNull(key);
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected " + reader.peek() + " for key " + key);
+            }
+        }
+        reader.endObject();
+
+        return map;
+    }
+
+    public static WritableArray readWritableArray(JsonReader reader) throws IOException {
+        WritableArray arr = Arguments.createArray();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            switch (reader.peek()) {
+                case BEGIN_OBJECT:
+                    arr.pushMap(readWritableMap(reader));
+                    break;
+                case BEGIN_ARRAY:
+                    arr.pushArray(readWritableArray(reader));
+                    break;
+                case STRING:
+                    arr.pushString(reader.nextString());
+                    break;
+                case NUMBER:
+                    Number number = parseNumber(reader.nextString());
+                    if (number instanceof Integer)
+                        arr.pushInt(number.intValue());
+                    else
+                        arr.pushDouble(number.doubleValue());
+                    break;
+                case BOOLEAN:
+                    arr.pushBoolean(reader.nextBoolean());
+                    break;
+                case NULL:
+                    reader.nextNull();
+                    arr.pushNull();
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected " + reader.peek() + " in array");
+            }
+        }
+        reader.endArray();
+
+        return arr;
+    }
+
+    // Matches what JSONObject parses the same text to: whole numbers within int range are ints
+    private static Number parseNumber(String number) {
+        if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+            try {
+                long longValue = Long.parseLong(number);
+                if (longValue >= Integer.MIN_VALUE && longValue <= Integer.MAX_VALUE) {
+                    return (int) longValue;
+                }
+                return (double) longValue;
+            } catch (NumberFormatException e) {
+                // Too large for a long, fall through to a double
+            }
+        }
+
+        return Double.parseDouble(number);
+    }
+
     public static JSONArray convertReadableToJsonArray(ReadableArray arr) {
         JSONArray jsonArr = new JSONArray();
         for (int i=0; i<arr.size(); i++) {
@@ -134,6 +241,8 @@ public class OTAUtils {
         return jsonArr;
     }
 
+    // Stays tree-based: BundleManager edits the update package, keeps it and persists it as a
+    // JSONObject, so streaming it would only add another representation
     public static JSONObject convertReadableToJsonObject(ReadableMap map) {
         JSONObject jsonObj = new JSONObject();
         ReadableMapKeySetIterator it = map.keySetIterator();
@@ -171,31 +280,6 @@ public class OTAUtils {
         return jsonObj;
     }
 
-    public static JSONObject getJsonObjectFromFile(String filePath) throws IOException {
-        String content = FileUtils.readFileToString(filePath);
-        try {
-            return new JSONObject(content);
-        } catch (JSONException jsonException) {
-            throw new OTAMalformedDataException(filePath, jsonException);
-        }
-    }
-
-    public static void log(String message) {
-        Log.d(OTAConstants.REACT_NATIVE_LOG_TAG, "[OTAUpdater] " + message);
-    }
-
-    public static void log(Throwable tr) {
-        Log.e(OTAConstants.REACT_NATIVE_LOG_TAG, "[OTAUpdater] Exception", tr);
-    }
-
-    public static void setJSONValueForKey(JSONObject json, String key, Object value) {
-        try {
-            json.put(key, value);
-        } catch (JSONException e) {
-            throw new OTAUnknownException("Unable to set value " + value + " for key " + key + " to JSONObject");
-        }
-    }
-
     public static String tryGetString(ReadableMap map, String key) {
         try {
             return map.getString(key);
@@ -204,9 +288,12 @@ public class OTAUtils {
         }
     }
 
-    public static void writeJsonToFile(JSONObject json, String filePath) throws IOException {
-        String jsonString = json.toString();
-        FileUtils.writeStringToFile(jsonString, filePath);
+    public static WritableMap convertDownloadProgressToWritable(DownloadProgress progress) {
+        WritableMap map = Arguments.createMap();
+        map.putDouble("totalBytes", progress.getTotalBytes());
+        map.putDouble("receivedBytes", progress.getReceivedBytes());
+        map.putDouble("decodedBytes", progress.getDecodedBytes());
+        map.putDouble("bytesPerSecond", progress.getBytesPerSecond());
+        return map;
     }
 }
-
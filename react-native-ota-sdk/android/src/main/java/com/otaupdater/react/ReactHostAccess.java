@@ -0,0 +1,62 @@
+package com.otaupdater.react;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * The two non-public members of ReactNativeHost a background reload relies on: the factory that
+ * builds a ReactInstanceManager from the host's settings, and the field holding the host's own
+ * instance. Both are looked up once. When a React Native version renames or retypes them, the
+ * reason is kept so background reloads can fall back to a normal reload.
+ */
+class ReactHostAccess {
+
+    private static final String CREATE_METHOD_NAME = "createReactInstanceManager";
+    private static final String INSTANCE_FIELD_NAME = "mReactInstanceManager";
+
+    private final Method mCreateMethod;
+    private final Field mInstanceField;
+    private final String mUnavailableReason;
+
+    ReactHostAccess(Class<?> hostClass) {
+        Method createMethod = null;
+        Field instanceField = null;
+        String unavailableReason = null;
+        try {
+            createMethod = hostClass.getDeclaredMethod(CREATE_METHOD_NAME);
+            instanceField = hostClass.getDeclaredField(INSTANCE_FIELD_NAME);
+            if (!instanceField.getType().isAssignableFrom(createMethod.getReturnType())) {
+                unavailableReason = hostClass.getName() + "." + CREATE_METHOD_NAME + "() returns " +
+                        createMethod.getReturnType().getName() + ", which doesn't fit " + INSTANCE_FIELD_NAME;
+            } else {
+                createMethod.setAccessible(true);
+                instanceField.setAccessible(true);
+            }
+        } catch (NoSuchMethodException e) {
+            unavailableReason = hostClass.getName() + " has no " + CREATE_METHOD_NAME + "() method";
+        } catch (NoSuchFieldException e) {
+            unavailableReason = hostClass.getName() + " has no " + INSTANCE_FIELD_NAME + " field";
+        } catch (RuntimeException e) {
+            // setAccessible throws a SecurityException when reflection is restricted
+            unavailableReason = "Unable to access " + hostClass.getName() + ": " + e.getMessage();
+        }
+
+        mUnavailableReason = unavailableReason;
+        mCreateMethod = unavailableReason == null ? createMethod : null;
+        mInstanceField = unavailableReason == null ? instanceField : null;
+    }
+
+    // Null when both members were found
+    String getUnavailableReason() {
+        return mUnavailableReason;
+    }
+
+    // Builds a manager with the host's packages and settings, without replacing the host's own instance
+    Object createInstanceManager(Object host) throws Exception {
+        return mCreateMethod.invoke(host);
+    }
+
+    void setInstanceManager(Object host, Object instanceManager) throws Exception {
+        mInstanceField.set(host, instanceManager);
+    }
+}
@@ -7,118 +7,162 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Failed update history and pending update state. Both are read from SharedPreferences once and
+ * then answered from memory; changes are written back with apply(), and flush() blocks until
+ * they are on disk.
+ */
 public class SettingsManager {
 
+    private static final int MAX_FAILED_UPDATES = 50;
+
     private SharedPreferences mSettings;
+    private boolean mIsLoaded = false;
+
+    // Failed packages by hash, oldest first
+    private final LinkedHashMap<String, JSONObject> mFailedUpdates = new LinkedHashMap<>();
+    private JSONObject mPendingUpdate;
 
     public SettingsManager(Context applicationContext) {
         mSettings = applicationContext.getSharedPreferences(OTAConstants.CODE_PUSH_PREFERENCES, 0);
     }
 
-    public JSONArray getFailedUpdates() {
-        String failedUpdatesString = mSettings.getString(OTAConstants.FAILED_UPDATES_KEY, null);
-        if (failedUpdatesString == null) {
-            return new JSONArray();
+    private void ensureLoaded() {
+        if (mIsLoaded) {
+            return;
         }
 
-        try {
-            return new JSONArray(failedUpdatesString);
-        } catch (JSONException e) {
-            JSONArray emptyArray = new JSONArray();
-            mSettings.edit().putString(OTAConstants.FAILED_UPDATES_KEY, emptyArray.toString()).commit();
-            return emptyArray;
+        String failedUpdatesString = mSettings.getString(OTAConstants.FAILED_UPDATES_KEY, null);
+        if (failedUpdatesString != null) {
+            try {
+                JSONArray failedUpdates = new JSONArray(failedUpdatesString);
+                for (int i = 0; i < failedUpdates.length(); i++) {
+                    JSONObject failedPackage = failedUpdates.optJSONObject(i);
+                    String failedPackageHash = failedPackage != null ?
+                            failedPackage.optString(OTAConstants.PACKAGE_HASH_KEY, null) : null;
+                    if (failedPackageHash == null) {
+                        OTAUtils.log("Skipping failed update entry without a package hash");
+                        continue;
+                    }
+                    mFailedUpdates.put(failedPackageHash, failedPackage);
+                }
+                evictOldFailedUpdates();
+            } catch (JSONException e) {
+                mFailedUpdates.clear();
+                mSettings.edit().putString(OTAConstants.FAILED_UPDATES_KEY, new JSONArray().toString()).apply();
+            }
         }
-    }
 
-    public JSONObject getPendingUpdate() {
         String pendingUpdateString = mSettings.getString(OTAConstants.PENDING_UPDATE_KEY, null);
-        if (pendingUpdateString == null) {
-            return null;
+        if (pendingUpdateString != null) {
+            try {
+                mPendingUpdate = new JSONObject(pendingUpdateString);
+            } catch (JSONException e) {
+                OTAUtils.log("Unable to parse pending update metadata " + pendingUpdateString +
+                        " stored in SharedPreferences");
+            }
         }
 
-        try {
-            return new JSONObject(pendingUpdateString);
-        } catch (JSONException e) {
-            OTAUtils.log("Unable to parse pending update metadata " + pendingUpdateString +
-                    " stored in SharedPreferences");
-            return null;
-        }
+        mIsLoaded = true;
     }
 
-    public boolean isFailedHash(String packageHash) {
-        JSONArray failedUpdates = getFailedUpdates();
-        if (packageHash != null) {
-            for (int i = 0; i < failedUpdates.length(); i++) {
-                try {
-                    JSONObject failedPackage = failedUpdates.getJSONObject(i);
-                    String failedPackageHash = failedPackage.getString(OTAConstants.PACKAGE_HASH_KEY);
-                    if (packageHash.equals(failedPackageHash)) {
-                        return true;
-                    }
-                } catch (JSONException e) {
-                    throw new OTAUnknownException("Unable to read failedUpdates data stored in SharedPreferences.", e);
-                }
-            }
+    // Callers get copies, the cached entries are only changed through this class
+    public synchronized JSONArray getFailedUpdates() {
+        ensureLoaded();
+        JSONArray failedUpdates = new JSONArray();
+        for (JSONObject failedPackage : mFailedUpdates.values()) {
+            failedUpdates.put(OTAUtils.copyJsonObject(failedPackage));
         }
 
-        return false;
+        return failedUpdates;
+    }
+
+    public synchronized JSONObject getPendingUpdate() {
+        ensureLoaded();
+        return mPendingUpdate != null ? OTAUtils.copyJsonObject(mPendingUpdate) : null;
+    }
+
+    public synchronized boolean isFailedHash(String packageHash) {
+        ensureLoaded();
+        return packageHash != null && mFailedUpdates.containsKey(packageHash);
     }
 
-    public boolean isPendingUpdate(String packageHash) {
-        JSONObject pendingUpdate = getPendingUpdate();
+    public synchronized boolean isPendingUpdate(String packageHash) {
+        ensureLoaded();
 
         try {
-            return pendingUpdate != null &&
-                    !pendingUpdate.getBoolean(OTAConstants.PENDING_UPDATE_IS_LOADING_KEY) &&
-                    (packageHash == null || pendingUpdate.getString(OTAConstants.PENDING_UPDATE_HASH_KEY).equals(packageHash));
+            return mPendingUpdate != null &&
+                    !mPendingUpdate.getBoolean(OTAConstants.PENDING_UPDATE_IS_LOADING_KEY) &&
+                    (packageHash == null || mPendingUpdate.getString(OTAConstants.PENDING_UPDATE_HASH_KEY).equals(packageHash));
         } catch (JSONException e) {
             throw new OTAUnknownException("Unable to read pending update metadata in isPendingUpdate.", e);
         }
     }
 
-    public void removeFailedUpdates() {
-        mSettings.edit().remove(OTAConstants.FAILED_UPDATES_KEY).commit();
+    public synchronized void removeFailedUpdates() {
+        ensureLoaded();
+        mFailedUpdates.clear();
+        mSettings.edit().remove(OTAConstants.FAILED_UPDATES_KEY).apply();
     }
 
-    public void removePendingUpdate() {
-        mSettings.edit().remove(OTAConstants.PENDING_UPDATE_KEY).commit();
+    public synchronized void removePendingUpdate() {
+        ensureLoaded();
+        mPendingUpdate = null;
+        mSettings.edit().remove(OTAConstants.PENDING_UPDATE_KEY).apply();
     }
 
-    public void saveFailedUpdate(JSONObject failedPackage) {
+    public synchronized void saveFailedUpdate(JSONObject failedPackage) {
+        ensureLoaded();
+        String packageHash;
         try {
-            if (isFailedHash(failedPackage.getString(OTAConstants.PACKAGE_HASH_KEY))) {
-                return;
-            }
+            packageHash = failedPackage.getString(OTAConstants.PACKAGE_HASH_KEY);
         } catch (JSONException e) {
             throw new OTAUnknownException("Unable to read package hash from package.", e);
         }
 
-        String failedUpdatesString = mSettings.getString(OTAConstants.FAILED_UPDATES_KEY, null);
-        JSONArray failedUpdates;
-        if (failedUpdatesString == null) {
-            failedUpdates = new JSONArray();
-        } else {
-            try {
-                failedUpdates = new JSONArray(failedUpdatesString);
-            } catch (JSONException e) {
-                throw new OTAMalformedDataException("Unable to parse failed updates information " +
-                        failedUpdatesString + " stored in SharedPreferences", e);
-            }
+        if (mFailedUpdates.containsKey(packageHash)) {
+            return;
         }
 
-        failedUpdates.put(failedPackage);
-        mSettings.edit().putString(OTAConstants.FAILED_UPDATES_KEY, failedUpdates.toString()).commit();
+        mFailedUpdates.put(packageHash, OTAUtils.copyJsonObject(failedPackage));
+        evictOldFailedUpdates();
+
+        // Serialized in place, the entries don't leave this class
+        JSONArray failedUpdates = new JSONArray();
+        for (JSONObject storedPackage : mFailedUpdates.values()) {
+            failedUpdates.put(storedPackage);
+        }
+        mSettings.edit().putString(OTAConstants.FAILED_UPDATES_KEY, failedUpdates.toString()).apply();
     }
 
-    public void savePendingUpdate(String packageHash, boolean isLoading) {
+    public synchronized void savePendingUpdate(String packageHash, boolean isLoading) {
+        ensureLoaded();
         JSONObject pendingUpdate = new JSONObject();
         try {
             pendingUpdate.put(OTAConstants.PENDING_UPDATE_HASH_KEY, packageHash);
             pendingUpdate.put(OTAConstants.PENDING_UPDATE_IS_LOADING_KEY, isLoading);
-            mSettings.edit().putString(OTAConstants.PENDING_UPDATE_KEY, pendingUpdate.toString()).commit();
         } catch (JSONException e) {
             throw new OTAUnknownException("Unable to save pending update.", e);
         }
+
+        mPendingUpdate = pendingUpdate;
+        mSettings.edit().putString(OTAConstants.PENDING_UPDATE_KEY, pendingUpdate.toString()).apply();
     }
-}
 
+    // Blocks until every earlier apply() has reached the disk, call it off the main thread
+    public boolean flush() {
+        return mSettings.edit().commit();
+    }
+
+    private void evictOldFailedUpdates() {
+        Iterator<Map.Entry<String, JSONObject>> iterator = mFailedUpdates.entrySet().iterator();
+        while (mFailedUpdates.size() > MAX_FAILED_UPDATES && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.otaupdater.react;
+
+import android.os.SystemClock;
+
+/**
+ * Forwards download progress at most once per interval and byte delta. Completion is always
+ * forwarded, and flush() delivers whatever was held back once the download has finished.
+ */
+public class ThrottledProgressCallback implements DownloadProgressCallback {
+    private DownloadProgressCallback mCallback;
+    private long mMinIntervalMs;
+    private long mMinBytes;
+
+    private long mLastEmitTime = -1;
+    private long mLastEmittedBytes = -1;
+    private long mLastEmittedDecodedBytes = -1;
+    private DownloadProgress mPendingProgress;
+
+    public ThrottledProgressCallback(DownloadProgressCallback callback, long minIntervalMs, long minBytes) {
+        mCallback = callback;
+        mMinIntervalMs = minIntervalMs;
+        mMinBytes = minBytes;
+    }
+
+    @Override
+    public synchronized void call(DownloadProgress downloadProgress) {
+        long now = now();
+        long receivedBytes = downloadProgress.getReceivedBytes();
+        boolean isDue = mLastEmitTime < 0 ||
+                (now - mLastEmitTime >= mMinIntervalMs && receivedBytes - mLastEmittedBytes >= mMinBytes);
+        if (isDue || downloadProgress.isCompleted()) {
+            emit(downloadProgress, now);
+        } else {
+            mPendingProgress = downloadProgress;
+        }
+    }
+
+    public synchronized void flush() {
+        if (mPendingProgress != null) {
+            emit(mPendingProgress, now());
+        }
+        mPendingProgress = null;
+    }
+
+    private void emit(DownloadProgress downloadProgress, long now) {
+        if (downloadProgress.getReceivedBytes() == mLastEmittedBytes &&
+            downloadProgress.getDecodedBytes() == mLastEmittedDecodedBytes) {
+            return;
+        }
+
+        mLastEmitTime = now;
+        mLastEmittedBytes = downloadProgress.getReceivedBytes();
+        mLastEmittedDecodedBytes = downloadProgress.getDecodedBytes();
+        mPendingProgress = null;
+        mCallback.call(downloadProgress);
+    }
+
+    // Clock for the interval, overridden by tests
+    long now() {
+        return SystemClock.elapsedRealtime();
+    }
+}
@@ -0,0 +1,76 @@
+package com.otaupdater.react;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BundleSwapperTest {
+
+    // Has the members ReactNativeHost has in the React Native versions the swap was written for
+    static class SupportedHost {
+        private Object mReactInstanceManager;
+
+        protected Object createReactInstanceManager() {
+            return new Object();
+        }
+    }
+
+    static class HostWithoutFactory {
+        private Object mReactInstanceManager;
+    }
+
+    static class HostWithRenamedField {
+        private Object mReactHost;
+
+        protected Object createReactInstanceManager() {
+            return new Object();
+        }
+    }
+
+    static class HostWithRetypedFactory {
+        private String mReactInstanceManager;
+
+        protected Object createReactInstanceManager() {
+            return new Object();
+        }
+    }
+
+    @Test
+    public void missingHostInternalsFallBackToANormalReload() {
+        assertReason("createReactInstanceManager", new ReactHostAccess(HostWithoutFactory.class));
+        assertReason("mReactInstanceManager", new ReactHostAccess(HostWithRenamedField.class));
+        assertReason("doesn't fit", new ReactHostAccess(HostWithRetypedFactory.class));
+    }
+
+    @Test
+    public void missingRootViewOrReactApplicationFallBackToANormalReload() {
+        ReactHostAccess hostAccess = new ReactHostAccess(SupportedHost.class);
+
+        assertNotNull(BundleSwapper.getUnsupportedReason(hostAccess, false, true));
+        assertNotNull(BundleSwapper.getUnsupportedReason(hostAccess, true, false));
+        assertNull(BundleSwapper.getUnsupportedReason(hostAccess, true, true));
+    }
+
+    @Test
+    public void supportedHostIsReachedThroughTheCachedLookups() throws Exception {
+        ReactHostAccess hostAccess = new ReactHostAccess(SupportedHost.class);
+        SupportedHost host = new SupportedHost();
+
+        Object instanceManager = hostAccess.createInstanceManager(host);
+        hostAccess.setInstanceManager(host, instanceManager);
+
+        assertNotNull(instanceManager);
+        assertSame(instanceManager, host.mReactInstanceManager);
+    }
+
+    private static void assertReason(String expectedPart, ReactHostAccess hostAccess) {
+        String reason = BundleSwapper.getUnsupportedReason(hostAccess, true, true);
+        assertNotNull(reason);
+        assertTrue(reason, reason.contains(expectedPart));
+        assertEquals(hostAccess.getUnavailableReason(), reason);
+    }
+}
@@ -0,0 +1,84 @@
+package com.otaupdater.react;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ThrottledProgressCallbackTest {
+
+    private static final long TOTAL_BYTES = 1000;
+
+    private long mNow = 0;
+    private final List<Long> mEmittedBytes = new ArrayList<>();
+    private final DownloadProgressCallback mCallback = new DownloadProgressCallback() {
+        @Override
+        public void call(DownloadProgress downloadProgress) {
+            mEmittedBytes.add(downloadProgress.getReceivedBytes());
+        }
+    };
+
+    @Test
+    public void progressIsCoalescedPerInterval() {
+        ThrottledProgressCallback throttledCallback = createCallback(100, 0);
+
+        report(throttledCallback, 0, 10);
+        report(throttledCallback, 10, 20);
+        report(throttledCallback, 50, 30);
+        report(throttledCallback, 100, 40);
+        report(throttledCallback, 150, 50);
+
+        assertEquals(listOf(10, 40), mEmittedBytes);
+
+        // The last held back update is delivered once the download ends
+        throttledCallback.flush();
+        assertEquals(listOf(10, 40, 50), mEmittedBytes);
+        throttledCallback.flush();
+        assertEquals(listOf(10, 40, 50), mEmittedBytes);
+    }
+
+    @Test
+    public void completionIsAlwaysForwarded() {
+        ThrottledProgressCallback throttledCallback = createCallback(100, 0);
+
+        report(throttledCallback, 0, 10);
+        report(throttledCallback, 1, TOTAL_BYTES);
+
+        assertEquals(listOf(10, TOTAL_BYTES), mEmittedBytes);
+    }
+
+    @Test
+    public void smallDeltasWaitForTheByteThreshold() {
+        ThrottledProgressCallback throttledCallback = createCallback(100, 200);
+
+        report(throttledCallback, 0, 10);
+        report(throttledCallback, 500, 100);
+        report(throttledCallback, 600, 300);
+
+        assertEquals(listOf(10, 300), mEmittedBytes);
+    }
+
+    private ThrottledProgressCallback createCallback(long minIntervalMs, long minBytes) {
+        return new ThrottledProgressCallback(mCallback, minIntervalMs, minBytes) {
+            @Override
+            long now() {
+                return mNow;
+            }
+        };
+    }
+
+    private void report(ThrottledProgressCallback throttledCallback, long now, long receivedBytes) {
+        mNow = now;
+        throttledCallback.call(new DownloadProgress(TOTAL_BYTES, receivedBytes));
+    }
+
+    private static List<Long> listOf(long... values) {
+        List<Long> list = new ArrayList<>();
+        for (long value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+}
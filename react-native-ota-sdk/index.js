@@ -1,7 +1,8 @@
 import OTAUpdater from './src/OTAUpdater';
 import VersionChecker from './src/VersionChecker';
 import NetworkMonitor from './src/NetworkMonitor';
+import NativeBundleManager from './src/NativeBundleManager';
 
-export { OTAUpdater, VersionChecker, NetworkMonitor };
+export { OTAUpdater, VersionChecker, NetworkMonitor, NativeBundleManager };
 export default OTAUpdater;
 
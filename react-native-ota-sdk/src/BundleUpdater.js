@@ -16,6 +16,13 @@ class BundleUpdater {
     this.onSuccess = config.onSuccess || (() => {});
     this.bundleCacheDir = RNFS ? `${RNFS.CachesDirectoryPath}/OTA_Bundles` : '/tmp/OTA_Bundles';
     this.useNativeModule = NativeBundleManager.isAvailable && Platform.OS === 'android';
+
+    // Apply native download options (e.g. streamingExtract) if provided
+    if (this.useNativeModule && config.nativeOptions) {
+      NativeBundleManager.configure(config.nativeOptions).catch((error) => {
+        console.warn('⚠️ [BundleUpdater] Failed to apply native options:', error);
+      });
+    }
     
     // Set up download progress listener if native module is available
     if (this.useNativeModule) {
@@ -40,12 +47,15 @@ class BundleUpdater {
     }
   }
 
-  async downloadBundle(downloadUrl, versionName) {
+  async downloadBundle(downloadUrl, versionName, packageOptions = null) {
     try {
       // Use native module if available (Android only)
       if (this.useNativeModule) {
         console.log('📦 [BundleUpdater] Using native module for bundle download');
-        const packageInfo = await NativeBundleManager.downloadBundle(downloadUrl, versionName);
+        // Extra package fields (e.g. patchUrl, basePackageHash, bundleHash) go through downloadPackage
+        const packageInfo = packageOptions
+          ? await NativeBundleManager.downloadPackage({ ...packageOptions, downloadUrl, versionName })
+          : await NativeBundleManager.downloadBundle(downloadUrl, versionName);
         
         // Get bundle path from package info
         const bundlePath = packageInfo?.bundlePath || packageInfo?.relativeBundlePath;
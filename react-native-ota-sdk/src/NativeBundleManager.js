@@ -14,6 +14,13 @@ class NativeBundleManager {
     return await OTANative.downloadBundle(url, versionName);
   }
 
+  async downloadPackage(updatePackage) {
+    if (!this.isAvailable) {
+      throw new Error('OTANative module is not available');
+    }
+    return await OTANative.downloadPackage(updatePackage);
+  }
+
   async installBundle(bundlePath) {
     if (!this.isAvailable) {
       throw new Error('OTANative module is not available');
@@ -48,6 +55,47 @@ class NativeBundleManager {
     }
     return await OTANative.getConfiguration();
   }
+
+  async configure(options) {
+    if (!this.isAvailable) {
+      return null;
+    }
+    return await OTANative.configure(options);
+  }
+
+  // Bytes per second for native downloads, 0 for unlimited; applies to running downloads too
+  async setMaxDownloadRate(bytesPerSecond) {
+    return await this.configure({ maxDownloadRate: bytesPerSecond });
+  }
+
+  async getExecutorStats() {
+    if (!this.isAvailable) {
+      return null;
+    }
+    return await OTANative.getExecutorStats();
+  }
+
+  // Validators and body of the last response for a URL, persisted in the native HTTP cache
+  async getCachedResponse(url) {
+    if (!this.isAvailable) {
+      return null;
+    }
+    return await OTANative.getCachedResponse(url);
+  }
+
+  async saveCachedResponse(url, response) {
+    if (!this.isAvailable) {
+      return null;
+    }
+    return await OTANative.saveCachedResponse(url, response);
+  }
+
+  async getMetrics() {
+    if (!this.isAvailable) {
+      return null;
+    }
+    return await OTANative.getMetrics();
+  }
 }
 
 export default new NativeBundleManager();
@@ -17,6 +17,7 @@ class OTAUpdater {
       autoDownloadOnWifi: config.autoDownloadOnWifi || false,
       autoInstallApk: config.autoInstallApk !== undefined ? config.autoInstallApk : true, // Default: true (aggressive mode)
       autoInstallOnWifi: config.autoInstallOnWifi || false, // Only auto-install when connected to WiFi
+      nativeOptions: config.nativeOptions || null, // Options forwarded to the native bundle module
       onUpdateAvailable: config.onUpdateAvailable || (() => {}),
       onUpdateProgress: config.onUpdateProgress || (() => {}),
       onUpdateComplete: config.onUpdateComplete || (() => {}),
@@ -31,6 +32,7 @@ class OTAUpdater {
       onSuccess: this.handleDownloadSuccess.bind(this),
     });
     this.bundleUpdater = new BundleUpdater({
+      nativeOptions: this.config.nativeOptions,
       onProgress: this.handleDownloadProgress.bind(this),
       onError: this.handleUpdateError.bind(this),
       onSuccess: this.handleDownloadSuccess.bind(this),
@@ -223,6 +225,18 @@ class OTAUpdater {
     }
   }
 
+  getNativePackageOptions(update) {
+    // Optional fields the native module understands, forwarded only when the backend sends them
+    const keys = ['packageHash', 'sha256', 'patchUrl', 'basePackageHash', 'bundleHash', 'manifest', 'diffUrl'];
+    const options = {};
+    keys.forEach((key) => {
+      if (update[key] !== undefined && update[key] !== null) {
+        options[key] = update[key];
+      }
+    });
+    return Object.keys(options).length > 0 ? options : null;
+  }
+
   async handleMinorUpdate(update) {
     try {
       // Minor updates require bundle download URL from backend
@@ -248,7 +262,8 @@ class OTAUpdater {
       // Download bundle
       const bundlePath = await this.bundleUpdater.downloadBundle(
         update.bundleUrl,
-        update.versionName
+        update.versionName,
+        this.getNativePackageOptions(update)
       );
 
       console.log(`✅ [OTAUpdater] Bundle downloaded: ${bundlePath}`);
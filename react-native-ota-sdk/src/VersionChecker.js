@@ -1,5 +1,6 @@
 import { Platform } from 'react-native';
 import { NativeModules } from 'react-native';
+import NativeBundleManager from './NativeBundleManager';
 
 class VersionChecker {
   constructor(config) {
@@ -10,6 +11,9 @@ class VersionChecker {
     // Allow app to pass version explicitly (recommended)
     this.currentVersionName = config.currentVersionName;
     this.currentVersionCode = config.currentVersionCode;
+    // Last response per request URL with its validators, for conditional update checks.
+    // Persisted through the native HTTP cache so it survives app restarts.
+    this.responseCache = {};
   }
 
   getDeviceId() {
@@ -104,6 +108,14 @@ class VersionChecker {
       }
 
       const requestUrl = `${this.apiUrl}/updates/check?${params.toString()}`;
+      const cached = this.responseCache[requestUrl] || await this.loadCachedResponse(requestUrl);
+      if (cached && cached.etag) {
+        headers['If-None-Match'] = cached.etag;
+      }
+      if (cached && cached.lastModified) {
+        headers['If-Modified-Since'] = cached.lastModified;
+      }
+
       console.log('🔄 [VersionChecker] Checking for updates...');
       console.log('📡 [VersionChecker] Request URL:', requestUrl);
       console.log('📡 [VersionChecker] Request headers:', JSON.stringify(headers, null, 2));
@@ -117,6 +129,17 @@ class VersionChecker {
       console.log('📡 [VersionChecker] Response status:', response.status);
       console.log('📡 [VersionChecker] Response headers:', JSON.stringify(Object.fromEntries(response.headers.entries()), null, 2));
 
+      if (response.status === 304 && cached) {
+        console.log('✅ [VersionChecker] Update info unchanged since last check');
+        // A 304 may carry updated validators, the ones it omits still hold
+        await this.saveCachedResponse(requestUrl, {
+          etag: response.headers.get('etag') || cached.etag,
+          lastModified: response.headers.get('last-modified') || cached.lastModified,
+          data: cached.data
+        });
+        return cached.data;
+      }
+
       if (!response.ok) {
         const errorText = await response.text();
         console.error('❌ [VersionChecker] Update check failed:', {
@@ -129,6 +152,10 @@ class VersionChecker {
 
       const data = await response.json();
       console.log('✅ [VersionChecker] Update check successful:', JSON.stringify(data, null, 2));
+
+      const etag = response.headers.get('etag');
+      const lastModified = response.headers.get('last-modified');
+      await this.saveCachedResponse(requestUrl, { etag, lastModified, data });
       return data;
     } catch (error) {
       console.error('❌ [VersionChecker] Error checking for updates:', {
@@ -153,6 +180,40 @@ class VersionChecker {
     }
   }
 
+  async loadCachedResponse(requestUrl) {
+    try {
+      const stored = await NativeBundleManager.getCachedResponse(requestUrl);
+      if (!stored || !stored.body) {
+        return null;
+      }
+      const cached = { etag: stored.etag, lastModified: stored.lastModified, data: JSON.parse(stored.body) };
+      this.responseCache[requestUrl] = cached;
+      return cached;
+    } catch (error) {
+      console.warn('⚠️ [VersionChecker] Could not read cached update info:', error);
+      return null;
+    }
+  }
+
+  async saveCachedResponse(requestUrl, cached) {
+    if (cached.etag || cached.lastModified) {
+      this.responseCache[requestUrl] = cached;
+    } else {
+      delete this.responseCache[requestUrl];
+    }
+
+    try {
+      // The native cache keeps only the latest check, an entry without validators clears it
+      await NativeBundleManager.saveCachedResponse(requestUrl, {
+        etag: cached.etag || null,
+        lastModified: cached.lastModified || null,
+        body: JSON.stringify(cached.data)
+      });
+    } catch (error) {
+      console.warn('⚠️ [VersionChecker] Could not persist update info:', error);
+    }
+  }
+
   async reportUpdateStatus(status, fromVersion, toVersion, updateType, errorMessage = null) {
     try {
       const headers = {